@@ -0,0 +1,72 @@
+package ox.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ox.util.CSVReader;
+import ox.util.CSVWriter;
+import ox.x.XList;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CSVBench {
+
+  private static final int NUM_ROWS = 10_000;
+
+  private String csv;
+  private XList<XList<String>> rows;
+
+  @Setup
+  public void setup() {
+    rows = XList.create();
+    rows.add(XList.of("id", "name", "date", "amount", "notes"));
+    for (int i = 0; i < NUM_ROWS; i++) {
+      rows.add(XList.of(String.valueOf(i), "Name " + i, "2024-01-" + (10 + i % 20), "$" + i + ".99",
+          i % 5 == 0 ? "has, a comma" : "plain"));
+    }
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    write(baos);
+    csv = new String(baos.toByteArray());
+  }
+
+  @Benchmark
+  public void read(Blackhole bh) {
+    new CSVReader(csv).forEachRow(row -> {
+      bh.consume(row.get("name"));
+      bh.consume(row.getISODate("date"));
+      bh.consume(row.getMoney("amount"));
+    });
+  }
+
+  @Benchmark
+  public int write() {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(csv.length());
+    write(baos);
+    return baos.size();
+  }
+
+  private void write(ByteArrayOutputStream baos) {
+    CSVWriter writer = new CSVWriter(baos);
+    for (XList<String> row : rows) {
+      writer.write(row);
+    }
+    writer.close();
+  }
+
+}
@@ -0,0 +1,65 @@
+package ox.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ox.Json;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBench {
+
+  private String text;
+  private Json json;
+
+  @Setup
+  public void setup() {
+    Json users = Json.array();
+    for (int i = 0; i < 100; i++) {
+      users.add(Json.object()
+          .with("id", i)
+          .with("name", "User " + i)
+          .with("email", "user" + i + "@example.com")
+          .with("balance", "$" + i + ",000.50")
+          .with("active", i % 3 != 0)
+          .with("tags", Json.array("a", "b", "c")));
+    }
+    json = Json.object().with("users", users).with("total", 100);
+    text = json.toString();
+  }
+
+  @Benchmark
+  public Json parse() {
+    return new Json(text);
+  }
+
+  @Benchmark
+  public void get(Blackhole bh) {
+    for (Json user : json.getJson("users").asJsonArray()) {
+      bh.consume(user.get("name"));
+      bh.consume(user.getInt("id"));
+      bh.consume(user.getBoolean("active"));
+    }
+  }
+
+  @Benchmark
+  public String serialize() {
+    return json.toString();
+  }
+
+}
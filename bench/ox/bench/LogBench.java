@@ -0,0 +1,53 @@
+package ox.bench;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.io.ByteStreams;
+
+import ox.Log;
+import ox.util.Time;
+
+/**
+ * Log throughput with 4 threads logging at once, with the output discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LogBench {
+
+  @Setup
+  public void setup() {
+    // Log captures System.out when it's first loaded, so this has to happen before anything touches Log
+    System.setOut(new PrintStream(ByteStreams.nullOutputStream()));
+    Time.useCoarseClock(10);
+    Log.showTimestamps();
+  }
+
+  @Benchmark
+  public void info() {
+    Log.info("Processed row for account");
+  }
+
+  @Benchmark
+  public void infoWithArgs() {
+    Log.info("Processed row %d for %s", 12345, "account");
+  }
+
+}
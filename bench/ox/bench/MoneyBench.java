@@ -0,0 +1,47 @@
+package ox.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ox.Money;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBench {
+
+  @Param({ "$1,234.56", "-$0.99", "(12,345,678.9)" })
+  public String text;
+
+  private Money money;
+
+  @Setup
+  public void setup() {
+    money = Money.parse(text);
+  }
+
+  @Benchmark
+  public Money parse() {
+    return Money.parse(text);
+  }
+
+  @Benchmark
+  public String format() {
+    return money.toString();
+  }
+
+}
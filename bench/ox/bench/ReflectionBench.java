@@ -0,0 +1,60 @@
+package ox.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ox.Reflection;
+import ox.Reflection.FieldAccessor;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionBench {
+
+  private static final FieldAccessor nameAccessor = Reflection.getAccessor(Row.class, "name");
+
+  private final Row row = new Row();
+
+  @Benchmark
+  public Object getByName() {
+    return Reflection.get(row, "name");
+  }
+
+  @Benchmark
+  public Object getWithAccessor() {
+    return nameAccessor.get(row);
+  }
+
+  @Benchmark
+  public void setWithConversion() {
+    Reflection.set(row, "count", "42");
+  }
+
+  @Benchmark
+  public Object convert() {
+    return Reflection.convert("2024-02-29", java.time.LocalDate.class);
+  }
+
+  @Benchmark
+  public Row newInstance() {
+    return Reflection.newInstance(Row.class);
+  }
+
+  public static class Row {
+    private String name = "name";
+    private int count;
+  }
+
+}
@@ -0,0 +1,77 @@
+package ox.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ox.util.KeywordMatcher;
+import ox.util.Regex;
+import ox.x.XList;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegexBench {
+
+  private static final Pattern NUMBER = Pattern.compile("\\d+");
+
+  private String document;
+  private XList<String> keywords;
+  private KeywordMatcher matcher;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      sb.append(random.nextBoolean() ? "word" : "item").append(random.nextInt(1000)).append(' ');
+    }
+    document = sb.toString();
+    keywords = XList.of("word12", "item99", "item500", "word777");
+    matcher = KeywordMatcher.of(keywords);
+  }
+
+  @Benchmark
+  public Pattern cachedPattern() {
+    return Regex.pattern("(\\w+)@(\\w+)\\.com");
+  }
+
+  @Benchmark
+  public XList<String> matches() {
+    return Regex.matches(NUMBER, document);
+  }
+
+  @Benchmark
+  public String replaceAll() {
+    return Regex.replaceAll(NUMBER, document, m -> "#");
+  }
+
+  @Benchmark
+  public int keywordsWithRegex() {
+    int ret = 0;
+    for (String keyword : keywords) {
+      ret += Regex.matches(Regex.pattern(Pattern.quote(keyword)), document).size();
+    }
+    return ret;
+  }
+
+  @Benchmark
+  public int keywordsWithMatcher() {
+    return matcher.matches(document).size();
+  }
+
+}
@@ -0,0 +1,55 @@
+package ox.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ox.x.XList;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XListBench {
+
+  @Param({ "100", "100000" })
+  public int size;
+
+  private XList<Integer> list;
+
+  @Setup
+  public void setup() {
+    list = XList.createWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      list.add(i);
+    }
+  }
+
+  @Benchmark
+  public XList<String> map() {
+    return list.map(String::valueOf);
+  }
+
+  @Benchmark
+  public XList<String> mapConcurrent() {
+    return list.concurrent().map(String::valueOf);
+  }
+
+  @Benchmark
+  public XList<Integer> filter() {
+    return list.filter(i -> (i & 1) == 0);
+  }
+
+}
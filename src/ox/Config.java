@@ -1,15 +1,59 @@
 package ox;
 
+import static com.google.common.base.Preconditions.checkState;
+import static ox.util.Utils.propagate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import ox.util.FileWatcher;
+import ox.util.FileWatcher.EventType;
+
+/**
+ * By default, json() is the live object behind the config and put() saves the file before returning.
+ *
+ * Calling live() switches to hot-reload mode: reads go through an immutable snapshot of the file with values parsed up
+ * front, so they never lock, and writes swap in a new snapshot. Edits made to the file by other processes are picked
+ * up automatically, and saves are coalesced on a background thread.
+ */
 public class Config {
 
   private static final Map<String, Config> configCache = Maps.newConcurrentMap();
 
+  private static final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(
+      new NamedThreadFactory(Config.class, "save").daemon());
+
+  private static final long SAVE_DELAY_MILLIS = 100;
+
   private final File configFile;
-  private final Json json;
+  private final Map<String, List<Consumer<String>>> listeners = Maps.newConcurrentMap();
+  private final AtomicBoolean saveScheduled = new AtomicBoolean(false);
+  private volatile Json json;
+
+  /**
+   * Only set in live mode.
+   */
+  private volatile Snapshot snapshot;
+
+  /**
+   * What save() last wrote to the file, so that reload() can ignore it.
+   */
+  private String lastSaved;
 
   private Config(File file) {
     this.configFile = file;
@@ -24,21 +68,33 @@ public class Config {
   }
 
   public String get(String key) {
-    return json.get(key);
+    Snapshot s = snapshot;
+    if (s == null) {
+      return json.get(key);
+    }
+    Value value = s.values.get(key);
+    return value == null ? s.json.get(key) : value.string;
   }
 
   public String get(String key, String defaultValue) {
-    String ret = json.get(key);
+    String ret = get(key);
     return ret == null ? defaultValue : ret;
   }
 
   public int getInt(String key, int defaultValue) {
-    Integer ret = json.getInt(key);
-    return ret == null ? defaultValue : ret;
+    Snapshot s = snapshot;
+    Value value = s == null ? null : s.values.get(key);
+    if (value == null || value.intValue == null) {
+      Integer ret = (s == null ? json : s.json).getInt(key);
+      return ret == null ? defaultValue : ret;
+    }
+    return value.intValue;
   }
 
   public boolean getBoolean(String key, boolean defaultValue) {
-    Boolean ret = json.getBoolean(key);
+    Snapshot s = snapshot;
+    Value value = s == null ? null : s.values.get(key);
+    Boolean ret = value == null ? (s == null ? json : s.json).getBoolean(key) : value.booleanValue;
     return ret == null ? defaultValue : ret;
   }
 
@@ -47,21 +103,183 @@ public class Config {
   }
 
   public <T extends Enum<T>> T getEnum(String key, Class<T> enumClass, T defaultValue) {
-    T ret = json.getEnum(key, enumClass);
+    Snapshot s = snapshot;
+    T ret = (s == null ? json : s.json).getEnum(key, enumClass);
     return ret == null ? defaultValue : ret;
   }
 
+  /**
+   * The values behind this config. Changes made to it are saved with the next put().
+   *
+   * In live mode, this is a copy instead, so use put() to change values.
+   */
   public Json json() {
-    return json;
+    Snapshot s = snapshot;
+    return s == null ? json : s.json.copy();
   }
 
   public void put(String key, String value) {
-    json.with(key, value);
-    save();
+    boolean live;
+    Runnable notifications;
+    synchronized (this) {
+      live = snapshot != null;
+      if (live) {
+        notifications = update(new Snapshot(snapshot.json.copy().with(key, value)));
+      } else {
+        String oldValue = valueOf(json, key);
+        json.with(key, value);
+        notifications = notification(key, oldValue, valueOf(json, key));
+      }
+    }
+    notifications.run();
+    if (live) {
+      scheduleSave();
+    } else {
+      save();
+    }
   }
 
-  private void save() {
-    IO.from(json.prettyPrint() + "\n").to(configFile);
+  /**
+   * The listener is called with the new value (or null if it was removed) whenever the key changes, whether through
+   * put() or (in live mode) an edit to the file.
+   */
+  public Config onChange(String key, Consumer<String> listener) {
+    listeners.computeIfAbsent(key, k -> Lists.newCopyOnWriteArrayList()).add(listener);
+    return this;
+  }
+
+  /**
+   * Switches this config to hot-reload mode until the returned handle is closed. Closing it stops watching the file,
+   * writes any pending changes and switches back to the default mode.
+   */
+  public synchronized Closeable live() {
+    checkState(snapshot == null, "Already live: " + configFile);
+    snapshot = new Snapshot(json.copy());
+    FileWatcher watcher = configFile.parent().watch().recursive(false).start(events -> {
+      if (events.any(e -> e.file.getName().equals(configFile.getName()) && e.type != EventType.DELETED)) {
+        reload();
+      }
+    });
+    Thread shutdownHook = new Thread(this::flush);
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+    return () -> stopLive(watcher, shutdownHook);
+  }
+
+  /**
+   * Writes any pending changes now.
+   */
+  public void flush() {
+    if (saveScheduled.get()) {
+      save();
+    }
+  }
+
+  private void stopLive(FileWatcher watcher, Thread shutdownHook) {
+    watcher.close();
+    try {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    } catch (IllegalStateException e) {
+      // already shutting down, so the hook will flush
+    }
+    synchronized (this) {
+      if (snapshot != null) {
+        flush();
+        json = snapshot.json;
+        snapshot = null;
+      }
+    }
+  }
+
+  /**
+   * Picks up an edit made to the file by another process. Package-private so that tests can call it directly.
+   */
+  void reload() {
+    Runnable notifications = () -> {
+    };
+    synchronized (this) {
+      // a pending put() wins over the file, and our own saves come back to us as watcher events
+      if (snapshot == null || saveScheduled.get()) {
+        return;
+      }
+      Json newJson;
+      try {
+        String text = IO.from(configFile).toString();
+        if (text.equals(lastSaved)) {
+          return;
+        }
+        newJson = new Json(text);
+      } catch (Exception e) {
+        // the file may be half written, we'll get another event when it's done
+        Log.warn("Could not reload " + configFile + ": " + e.getMessage());
+        return;
+      }
+      if (!newJson.equals(snapshot.json)) {
+        Log.debug("Reloaded " + configFile);
+        notifications = update(new Snapshot(newJson));
+      }
+    }
+    notifications.run();
+  }
+
+  /**
+   * Swaps in the new snapshot and returns a Runnable that notifies the listeners of any keys that changed. The caller
+   * runs it after releasing the lock.
+   */
+  private Runnable update(Snapshot newSnapshot) {
+    Snapshot old = snapshot;
+    snapshot = newSnapshot;
+
+    List<Runnable> ret = Lists.newArrayList();
+    for (String key : listeners.keySet()) {
+      ret.add(notification(key, valueOf(old.json, key), valueOf(newSnapshot.json, key)));
+    }
+    return () -> ret.forEach(Runnable::run);
+  }
+
+  private Runnable notification(String key, String oldValue, String newValue) {
+    List<Consumer<String>> list = listeners.get(key);
+    if (list == null || Objects.equals(oldValue, newValue)) {
+      return () -> {
+      };
+    }
+    return () -> list.forEach(listener -> {
+      try {
+        listener.accept(newValue);
+      } catch (Exception e) {
+        Log.error(e);
+      }
+    });
+  }
+
+  private static String valueOf(Json json, String key) {
+    Object o = json.getObject(key);
+    return o == null ? null : o instanceof Json ? o.toString() : json.get(key);
+  }
+
+  private void scheduleSave() {
+    if (saveScheduled.compareAndSet(false, true)) {
+      saver.schedule(Threads.wrap(this::save), SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Writes to a temporary file and renames it into place, so readers never see a partial file.
+   */
+  private synchronized void save() {
+    saveScheduled.set(false);
+    File temp = configFile.sibling(configFile.getName() + ".tmp");
+    Snapshot s = snapshot;
+    String text = (s == null ? json : s.json).prettyPrint() + "\n";
+    IO.from(text).to(temp);
+    try {
+      Files.move(temp.file.toPath(), configFile.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      temp.rename(configFile);
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+    lastSaved = text;
   }
 
   public static Config load(String appName) {
@@ -72,4 +290,43 @@ public class Config {
     return configCache.computeIfAbsent(file.getPath(), s -> new Config(file));
   }
 
+  private static class Snapshot {
+    private final Json json;
+    private final ImmutableMap<String, Value> values;
+
+    private Snapshot(Json json) {
+      this.json = json;
+      ImmutableMap.Builder<String, Value> builder = ImmutableMap.builder();
+      if (json.isObject()) {
+        for (String key : json) {
+          Object o = json.getObject(key);
+          if (o != null && !(o instanceof Json)) {
+            builder.put(key, new Value(json, key));
+          }
+        }
+      }
+      this.values = builder.build();
+    }
+  }
+
+  private static class Value {
+    private final String string;
+    private final Integer intValue;
+    private final Boolean booleanValue;
+
+    private Value(Json json, String key) {
+      this.string = json.get(key);
+      this.intValue = tryParseInt(string);
+      this.booleanValue = json.getBoolean(key);
+    }
+
+    private static Integer tryParseInt(String s) {
+      try {
+        return Integer.valueOf(s);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+
 }
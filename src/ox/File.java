@@ -5,25 +5,30 @@ import static ox.util.Utils.getExtension;
 import static ox.util.Utils.propagate;
 
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.function.Consumer;
 
 import com.google.common.base.Predicate;
-import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 
+import ox.util.FileWatcher;
+import ox.util.HashCache;
+import ox.util.MappedScanner;
+import ox.util.TreeWalker;
 import ox.x.XList;
 
 public class File {
@@ -126,6 +131,20 @@ public class File {
     children().forEach(child -> child.walkTree(callback));
   }
 
+  /**
+   * For large trees: walks this directory on multiple threads, and supports pruning and parallel copy/delete/size.
+   */
+  public TreeWalker walker() {
+    return new TreeWalker(this);
+  }
+
+  /**
+   * A debounced feed of changes to this directory. Call start() on the result to begin watching.
+   */
+  public FileWatcher watch() {
+    return new FileWatcher(this);
+  }
+
   public XList<File> filterTree(Predicate<File> filter) {
     XList<File> ret = XList.create();
     walkTree(file -> {
@@ -220,15 +239,27 @@ public class File {
     }
   }
 
+  /**
+   * Maps the whole file into memory. Files over 2GB can't be mapped as a single buffer; use scan() for those.
+   */
   public MappedByteBuffer toByteBuffer() {
-    try {
-      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
-      return channel.map(MapMode.READ_ONLY, 0, channel.size());
-    } catch (Exception e) {
+    // the mapping stays valid after the channel is closed
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      checkState(size <= Integer.MAX_VALUE, "Too large to map as one buffer: " + this + " (" + size + " bytes)");
+      return channel.map(MapMode.READ_ONLY, 0, size);
+    } catch (IOException e) {
       throw propagate(e);
     }
   }
 
+  /**
+   * Scans the lines (or other delimited records) of this file through a memory map, without a String per line.
+   */
+  public MappedScanner scan() {
+    return new MappedScanner(this);
+  }
+
   public File log() {
     Log.debug(IO.from(file).toString());
     return this;
@@ -248,26 +279,24 @@ public class File {
   }
 
   public void streamLines(Predicate<String> callback) {
-    try {
-      BufferedReader br = new BufferedReader(new FileReader(file));
+    try (BufferedReader br = new BufferedReader(
+        new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
       while (true) {
         String line = br.readLine();
         if (line == null || !callback.apply(line)) {
           break;
         }
       }
-      IO.close(br);
     } catch (Exception e) {
       throw propagate(e);
     }
   }
 
+  /**
+   * The SHA-256 of this file's contents. To avoid re-reading files that haven't changed, use HashCache.
+   */
   public String hash() {
-    try {
-      return Files.asByteSource(file).hash(Hashing.sha256()).toString();
-    } catch (IOException e) {
-      throw propagate(e);
-    }
+    return HashCache.computeHash(this);
   }
 
   @Override
@@ -32,7 +32,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.Flushable;
@@ -53,8 +52,12 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
+import java.nio.file.StandardOpenOption;
 import java.security.AccessController;
 import java.security.GeneralSecurityException;
 import java.security.PrivilegedAction;
@@ -653,11 +656,15 @@ public class HttpRequest {
 
   private long totalSize = -1;
 
-  // private long totalWritten = 0;
+  private long totalWritten = 0;
+
+  private boolean streamingModeSet = false;
+
+  private boolean autoStreaming = false;
 
   private Proxy proxy = null;
 
-  // private UploadProgress progress = UploadProgress.DEFAULT;
+  private UploadProgress progress = UploadProgress.DEFAULT;
 
   public HttpRequest(final String url, final String method)
       throws HttpRequestException {
@@ -737,6 +744,7 @@ public class HttpRequest {
 
   public HttpRequest chunk(final int size) {
     getConnection().setChunkedStreamingMode(size);
+    streamingModeSet = true;
     return this;
   }
 
@@ -1202,6 +1210,7 @@ public class HttpRequest {
 
   public HttpRequest contentLength(final long contentLength) {
     getConnection().setFixedLengthStreamingMode(contentLength);
+    streamingModeSet = true;
     return this;
   }
 
@@ -1224,14 +1233,84 @@ public class HttpRequest {
     }.call();
   }
 
-  // public HttpRequest progress(final UploadProgress callback) {
-  // if (callback == null) {
-  // progress = UploadProgress.DEFAULT;
-  // } else {
-  // progress = callback;
-  // }
-  // return this;
-  // }
+  /**
+   * Called after each chunk of a File, byte[] or InputStream body is written. The total is -1 when unknown.
+   */
+  public HttpRequest progress(final UploadProgress callback) {
+    if (callback == null) {
+      progress = UploadProgress.DEFAULT;
+    } else {
+      progress = callback;
+    }
+    return this;
+  }
+
+  /**
+   * Streams File, byte[], InputStream and multipart bodies instead of letting HttpURLConnection buffer all of them in
+   * memory to compute the Content-Length. File and byte[] bodies are sent with a fixed length, so the body must then be
+   * the whole request; anything else is chunked.
+   *
+   * HttpURLConnection can't resend a streamed body, so it no longer follows redirects or retries authentication on its
+   * own. Those responses come back to the caller instead.
+   */
+  public HttpRequest streamingMode() {
+    autoStreaming = true;
+    return this;
+  }
+
+  /**
+   * If streamingMode() was called and the caller hasn't already picked a mode with chunk() or contentLength(), picks
+   * one for the body. Must be called before the output is opened.
+   *
+   * @param length The exact size of the body, or -1 if unknown (chunked).
+   */
+  private HttpRequest autoStreamingMode(final long length) {
+    if (!autoStreaming || output != null || streamingModeSet) {
+      return this;
+    }
+    if (length >= 0) {
+      return contentLength(length);
+    } else {
+      return chunk(bufferSize);
+    }
+  }
+
+  protected HttpRequest upload(final InputStream input) throws IOException {
+    return new CloseOperation<HttpRequest>(input, ignoreCloseExceptions) {
+      @Override
+      public HttpRequest run() throws IOException {
+        final byte[] buffer = new byte[bufferSize];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+          output.write(buffer, 0, read);
+          totalWritten += read;
+          progress.onUpload(totalWritten, totalSize);
+        }
+        return HttpRequest.this;
+      }
+    }.call();
+  }
+
+  protected HttpRequest upload(final File input) throws IOException {
+    output.flush();
+    // not closed, since that would close the request's output stream
+    final WritableByteChannel target = Channels.newChannel(output);
+    final long chunkSize = Math.max(bufferSize, 1024 * 1024);
+    try (FileChannel channel = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+      final long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        long written = channel.transferTo(position, Math.min(chunkSize, size - position), target);
+        if (written <= 0) {
+          break;
+        }
+        position += written;
+        totalWritten += written;
+        progress.onUpload(totalWritten, totalSize);
+      }
+    }
+    return this;
+  }
 
   private HttpRequest incrementTotalSize(final long size) {
     if (totalSize == -1) {
@@ -1242,7 +1321,7 @@ public class HttpRequest {
   }
 
   protected HttpRequest closeOutput() throws IOException {
-    // progress(null);
+    progress(null);
     if (output == null) {
       return this;
     }
@@ -1284,7 +1363,7 @@ public class HttpRequest {
   protected HttpRequest startPart() throws IOException {
     if (!multipart) {
       multipart = true;
-      contentType(CONTENT_TYPE_MULTIPART).openOutput();
+      contentType(CONTENT_TYPE_MULTIPART).autoStreamingMode(-1).openOutput();
       output.write("--" + BOUNDARY + CRLF);
     } else {
       output.write(CRLF + "--" + BOUNDARY + CRLF);
@@ -1355,14 +1434,15 @@ public class HttpRequest {
 
   public HttpRequest part(final String name, final String filename,
       final String contentType, final File part) throws HttpRequestException {
-    final InputStream stream;
     try {
-      stream = new BufferedInputStream(new FileInputStream(part));
       incrementTotalSize(part.length());
+      startPart();
+      writePartHeader(name, filename, contentType);
+      upload(part);
     } catch (IOException e) {
       throw new HttpRequestException(e);
     }
-    return part(name, filename, contentType, stream);
+    return this;
   }
 
   public HttpRequest part(final String name, final InputStream part)
@@ -1376,7 +1456,7 @@ public class HttpRequest {
     try {
       startPart();
       writePartHeader(name, filename, contentType);
-      copy(part, output);
+      upload(part);
     } catch (IOException e) {
       throw new HttpRequestException(e);
     }
@@ -1389,14 +1469,18 @@ public class HttpRequest {
   }
 
   public HttpRequest send(final File input) throws HttpRequestException {
-    final InputStream stream;
+    if (!input.isFile()) {
+      throw new HttpRequestException(new FileNotFoundException(input.getPath()));
+    }
     try {
-      stream = new BufferedInputStream(new FileInputStream(input));
       incrementTotalSize(input.length());
-    } catch (FileNotFoundException e) {
+      autoStreamingMode(input.length());
+      openOutput();
+      upload(input);
+    } catch (IOException e) {
       throw new HttpRequestException(e);
     }
-    return send(stream);
+    return this;
   }
 
   public HttpRequest send(Json json) {
@@ -1407,14 +1491,16 @@ public class HttpRequest {
   public HttpRequest send(final byte[] input) throws HttpRequestException {
     if (input != null) {
       incrementTotalSize(input.length);
+      autoStreamingMode(input.length);
     }
     return send(new ByteArrayInputStream(input));
   }
 
   public HttpRequest send(final InputStream input) throws HttpRequestException {
     try {
+      autoStreamingMode(-1);
       openOutput();
-      copy(input, output);
+      upload(input);
     } catch (IOException e) {
       throw new HttpRequestException(e);
     }
@@ -1,6 +1,7 @@
 package ox;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static ox.util.Utils.normalize;
 import static ox.util.Utils.propagate;
 
@@ -20,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -29,9 +31,14 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import javax.imageio.ImageIO;
@@ -43,9 +50,11 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import com.google.common.base.Charsets;
-import com.google.common.io.ByteStreams;
 
+import ox.util.BufferPool;
 import ox.util.CSVReader;
+import ox.util.ParallelGZIPOutputStream;
+import ox.x.XList;
 
 public class IO {
 
@@ -61,7 +70,9 @@ public class IO {
   }
 
   public static Input from(byte[] data) {
-    return from(new ByteArrayInputStream(data));
+    Input ret = from(new ByteArrayInputStream(data));
+    ret.sizeHint = data.length;
+    return ret;
   }
 
   public static Input from(File file) {
@@ -71,6 +82,8 @@ public class IO {
   public static Input from(java.io.File file) {
     try {
       Input ret = from(new FileInputStream(file));
+      ret.sourceFile = file;
+      ret.sizeHint = file.length();
       if (file.getName().endsWith(".gzip") || file.getName().endsWith(".gz")) {
         ret.gzipInput();
       }
@@ -154,12 +167,32 @@ public class IO {
     return os;
   }
 
+  private static void copy(InputStream from, OutputStream to) throws IOException {
+    byte[] buffer = BufferPool.take();
+    try {
+      int n;
+      while ((n = from.read(buffer)) != -1) {
+        to.write(buffer, 0, n);
+      }
+    } finally {
+      BufferPool.give(buffer);
+    }
+  }
+
   public static class Input {
 
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     private final Object o;
     private InputStream is;
     private OutputStream os;
     private boolean zipInput, gzipInput, gzipOutput;
+    private int gzipLevel = Deflater.DEFAULT_COMPRESSION;
+    private java.io.File sourceFile = null;
+    /**
+     * The expected number of bytes in the (uncompressed) input, or -1 if unknown.
+     */
+    private long sizeHint = -1;
     private String imageFormat = "";
     private boolean keepOutputAlive = false, keepInputAlive = false;
     private Integer timeout = null;
@@ -211,7 +244,7 @@ public class IO {
       try {
         os = buffer(os);
         if (gzipOutput) {
-          os = new GZIPOutputStream(os);
+          os = new ParallelGZIPOutputStream(os, gzipLevel);
         }
         this.os = os;
         if (o instanceof RenderedImage) {
@@ -221,7 +254,7 @@ public class IO {
           // }
           ImageIO.write(r, imageFormat.isEmpty() ? "jpg" : imageFormat, os);
         } else {
-          ByteStreams.copy(asStream(), os);
+          copy(asStream(), os);
         }
       } catch (IOException e) {
         throw propagate(e);
@@ -254,9 +287,21 @@ public class IO {
     }
 
     public byte[] toByteArray() {
-      ByteArrayOutputStream os = new ByteArrayOutputStream();
-      to(os);
-      return os.toByteArray();
+      if (o instanceof RenderedImage || gzipOutput) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        to(os);
+        return os.toByteArray();
+      }
+
+      ReadResult result = readAll(false);
+      if (!result.pooled && result.length == result.data.length) {
+        return result.data;
+      }
+      try {
+        return Arrays.copyOf(result.data, result.length);
+      } finally {
+        result.release();
+      }
     }
 
     public void toClipboard() {
@@ -275,13 +320,90 @@ public class IO {
 
     @Override
     public String toString() {
+      if (o instanceof RenderedImage || gzipOutput) {
+        try {
+          return new String(toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+          finish();
+        }
+      }
+
+      // decode directly out of the read buffer
+      ReadResult result = readAll(true);
+      try {
+        return new String(result.data, 0, result.length, StandardCharsets.UTF_8);
+      } finally {
+        result.release();
+      }
+    }
+
+    private long getSizeHint() {
+      if (gzipInput || zipInput) {
+        return -1;
+      }
+      return sizeHint;
+    }
+
+    /**
+     * Reads the entire input into one buffer. When the size is known up front, the buffer is allocated at exactly that
+     * size. Otherwise (or if the caller only needs the buffer temporarily) it comes from the BufferPool.
+     */
+    private ReadResult readAll(boolean temporary) {
       try {
-        return new String(toByteArray(), StandardCharsets.UTF_8);
+        InputStream in = asStream();
+        long hint = getSizeHint();
+        boolean pooled;
+        byte[] buffer;
+        if (hint < 0) {
+          pooled = true;
+          buffer = BufferPool.take();
+        } else if (temporary && hint <= BufferPool.MAX_RETAINED_SIZE) {
+          pooled = true;
+          buffer = BufferPool.take((int) hint);
+        } else {
+          pooled = false;
+          buffer = new byte[(int) Math.min(hint, MAX_ARRAY_SIZE)];
+        }
+
+        int count = 0;
+        while (true) {
+          if (count == buffer.length) {
+            // the buffer may be exactly the right size, so check for the end before growing it
+            int b = in.read();
+            if (b == -1) {
+              break;
+            }
+            byte[] bigger = Arrays.copyOf(buffer, Math.max(BufferPool.DEFAULT_SIZE, newCapacity(buffer.length)));
+            if (pooled) {
+              BufferPool.give(buffer);
+            }
+            buffer = bigger;
+            buffer[count++] = (byte) b;
+            continue;
+          }
+          int n = in.read(buffer, count, buffer.length - count);
+          if (n == -1) {
+            break;
+          }
+          count += n;
+        }
+        return new ReadResult(buffer, count, pooled);
+      } catch (IOException e) {
+        throw propagate(e);
       } finally {
         finish();
       }
     }
 
+    private static int newCapacity(int length) {
+      int ret = length * 2;
+      if (ret < 0 || ret > MAX_ARRAY_SIZE) {
+        checkState(length < MAX_ARRAY_SIZE, "Input is too large for a byte array.");
+        return MAX_ARRAY_SIZE;
+      }
+      return ret;
+    }
+
     public Json toJson() {
       String s = toString();
       try {
@@ -344,8 +466,60 @@ public class IO {
       }
     }
 
+    /**
+     * Calls the callback with every file entry in the zip. The stream passed to the callback is only valid until the
+     * callback returns.
+     */
+    public void forEachZipEntry(BiConsumer<ZipEntry, InputStream> callback) {
+      zipInput = false;
+      try (ZipInputStream zis = new ZipInputStream(asStream())) {
+        InputStream entryStream = new FilterInputStream(zis) {
+          @Override
+          public void close() {
+            // the next entry reuses the same stream
+          }
+        };
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null) {
+          if (!entry.isDirectory()) {
+            callback.accept(entry, entryStream);
+          }
+        }
+      } catch (IOException e) {
+        throw propagate(e);
+      } finally {
+        finish();
+      }
+    }
+
+    /**
+     * Like forEachZipEntry(callback), but if this input is a file the entries are decompressed in parallel. Other
+     * inputs can't be randomly accessed, so they are read sequentially.
+     */
+    public void forEachZipEntry(int numThreads, BiConsumer<ZipEntry, InputStream> callback) {
+      if (sourceFile == null || numThreads <= 1) {
+        forEachZipEntry(callback);
+        return;
+      }
+
+      finish();
+      try (ZipFile zip = new ZipFile(sourceFile)) {
+        XList<ZipEntry> entries = XList.<ZipEntry> create(Collections.list(zip.entries()))
+            .filter(e -> !e.isDirectory());
+        Threads.get(numThreads).input(entries).run(entry -> {
+          try (InputStream is = new BufferedInputStream(zip.getInputStream(entry))) {
+            callback.accept(entry, is);
+          } catch (IOException e) {
+            throw propagate(e);
+          }
+        });
+      } catch (IOException e) {
+        throw propagate(e);
+      }
+    }
+
     public void readLines(Consumer<String> callback) {
-      try (BufferedReader br = new BufferedReader(new InputStreamReader(asStream()))) {
+      try (BufferedReader br = new BufferedReader(new InputStreamReader(asStream(), StandardCharsets.UTF_8))) {
         String line = br.readLine();
         while (line != null) {
           callback.accept(line);
@@ -380,6 +554,8 @@ public class IO {
         int code = httpConn.getResponseCode();
         String encoding = normalize(httpConn.getHeaderField("Content-Encoding"));
         gzipInput = encoding.equalsIgnoreCase("gzip");
+        // the header comes from the server, so only trust it to presize a modest buffer. readAll() grows past that.
+        sizeHint = Math.min(conn.getContentLengthLong(), BufferPool.MAX_RETAINED_SIZE);
         if (code == HttpURLConnection.HTTP_MOVED_TEMP || code == HttpURLConnection.HTTP_MOVED_PERM
             || code == HttpURLConnection.HTTP_SEE_OTHER) {
           // redirected
@@ -394,6 +570,24 @@ public class IO {
       return conn.getInputStream();
     }
 
+    private static class ReadResult {
+      private final byte[] data;
+      private final int length;
+      private final boolean pooled;
+
+      private ReadResult(byte[] data, int length, boolean pooled) {
+        this.data = data;
+        this.length = length;
+        this.pooled = pooled;
+      }
+
+      private void release() {
+        if (pooled) {
+          BufferPool.give(data);
+        }
+      }
+    }
+
     private void configureSSL(URLConnection conn) {
       try {
         if (acceptAllCerts) {
@@ -433,11 +627,23 @@ public class IO {
       return this;
     }
 
+    /**
+     * The output is compressed in parallel blocks (see ParallelGZIPOutputStream).
+     */
     public Input gzipOutput() {
       gzipOutput = true;
       return this;
     }
 
+    /**
+     * @param level 1 (fastest) to 9 (smallest)
+     */
+    public Input gzipOutput(int level) {
+      gzipOutput = true;
+      gzipLevel = level;
+      return this;
+    }
+
     public Input imageFormat(String format) {
       this.imageFormat = format;
       return this;
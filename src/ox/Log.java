@@ -21,6 +21,7 @@ import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
+import ox.util.CoarseClock;
 import ox.util.SplitOutputStream;
 import ox.util.SynchronizedOutputStream;
 import ox.util.Time;
@@ -48,7 +49,34 @@ public class Log {
   };
 
   public static void showTimestamps() {
-    prefix(() -> Instant.now() + " ");
+    prefix(new Supplier<String>() {
+      private volatile TimestampPrefix last = new TimestampPrefix(null);
+
+      @Override
+      public String get() {
+        CoarseClock clock = Time.getCoarseClock();
+        if (clock == null) {
+          return Instant.now() + " ";
+        }
+        // the timestamp only changes once per tick, so reuse the prefix until it does
+        String timestamp = clock.timestamp();
+        TimestampPrefix ret = last;
+        if (timestamp != ret.timestamp) {
+          ret = new TimestampPrefix(timestamp);
+          last = ret;
+        }
+        return ret.prefix;
+      }
+    });
+  }
+
+  private static class TimestampPrefix {
+    private final String timestamp, prefix;
+
+    private TimestampPrefix(String timestamp) {
+      this.timestamp = timestamp;
+      this.prefix = timestamp + " ";
+    }
   }
 
   public static void prefix(Supplier<String> prefixSupplier) {
@@ -6,19 +6,21 @@ import static ox.util.Utils.signum;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
 import java.util.function.Function;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Functions;
 
-import ox.util.Utils;
-
 public class Money implements Comparable<Money> {
 
   public static final Money ZERO = Money.dollars(0);
   public static final Money MAX = Money.fromLong(Long.MAX_VALUE);
   private static final CharMatcher moneyMatcher = CharMatcher.anyOf("$£€ ,-–()").precomputed();
 
+  // long enough for "-$92,233,720,368,547,758.08"
+  private static final ThreadLocal<char[]> formatBuffers = ThreadLocal.withInitial(() -> new char[32]);
+
   private final long cents;
 
   private Money(long cents) {
@@ -46,7 +48,11 @@ public class Money implements Comparable<Money> {
   }
 
   public Money multiply(Percent p) {
-    return multiply(p.getValue());
+    return multiply(p, RoundingMode.HALF_UP);
+  }
+
+  public Money multiply(Percent p, RoundingMode rounding) {
+    return new Money(p.multiplyCents(cents, rounding));
   }
 
   public Money multiply(double n) {
@@ -109,9 +115,61 @@ public class Money implements Comparable<Money> {
     return cents / 100.0;
   }
 
+  /**
+   * e.g. -$1,234.56
+   */
   @Override
   public String toString() {
-    return Utils.money(toDouble());
+    char[] buffer = formatBuffers.get();
+    int start = formatInto(cents, buffer);
+    return new String(buffer, start, buffer.length - start);
+  }
+
+  /**
+   * Appends the same text as toString() without creating a String.
+   */
+  public StringBuilder appendTo(StringBuilder sb) {
+    char[] buffer = formatBuffers.get();
+    int start = formatInto(cents, buffer);
+    return sb.append(buffer, start, buffer.length - start);
+  }
+
+  /**
+   * Writes the same text as toString() as ASCII bytes.
+   */
+  public ByteBuffer writeTo(ByteBuffer output) {
+    char[] buffer = formatBuffers.get();
+    for (int i = formatInto(cents, buffer); i < buffer.length; i++) {
+      output.put((byte) buffer[i]);
+    }
+    return output;
+  }
+
+  /**
+   * Formats right-aligned into the end of the buffer and returns the index of the first char.
+   */
+  private static int formatInto(long cents, char[] buffer) {
+    int i = buffer.length;
+    // abs() of each part separately, so that Long.MIN_VALUE doesn't overflow
+    long dollars = Math.abs(cents / 100);
+    int remainder = (int) Math.abs(cents % 100);
+    buffer[--i] = (char) ('0' + remainder % 10);
+    buffer[--i] = (char) ('0' + remainder / 10);
+    buffer[--i] = '.';
+    int digits = 0;
+    do {
+      if (digits > 0 && digits % 3 == 0) {
+        buffer[--i] = ',';
+      }
+      buffer[--i] = (char) ('0' + dollars % 10);
+      dollars /= 10;
+      digits++;
+    } while (dollars > 0);
+    buffer[--i] = '$';
+    if (cents < 0) {
+      buffer[--i] = '-';
+    }
+    return i;
   }
 
   public long getDollars() {
@@ -190,6 +248,64 @@ public class Money implements Comparable<Money> {
     if (isNullOrEmpty(s)) {
       return null;
     }
+    return new Money(parseCents(s));
+  }
+
+  /**
+   * Parses text like "$1,234.56", "(12)" or "–$3" into cents without allocating. Digits past the cents are rounded
+   * HALF_UP. Anything unusual (e.g. "1e3") goes through the slower Double based parser.
+   */
+  public static long parseCents(CharSequence s) {
+    long n = 0;
+    int fractionDigits = -1;
+    boolean negative = false, roundUp = false, anyDigits = false;
+    for (int i = 0, length = s.length(); i < length; i++) {
+      char c = s.charAt(i);
+      if (c >= '0' && c <= '9') {
+        anyDigits = true;
+        if (fractionDigits < 0) {
+          n = appendDigit(n, c - '0', s);
+        } else if (fractionDigits < 2) {
+          n = appendDigit(n, c - '0', s);
+          fractionDigits++;
+        } else if (fractionDigits == 2) {
+          roundUp = c >= '5';
+          fractionDigits++;
+        }
+      } else if (c == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+      } else if (c == '-' || c == '–' || c == '(') {
+        if (!anyDigits) {
+          negative = true;
+        }
+      } else if (!moneyMatcher.matches(c)) {
+        return parseCentsSlow(s.toString());
+      }
+    }
+    if (!anyDigits) {
+      return parseCentsSlow(s.toString());
+    }
+    for (int i = Math.max(fractionDigits, 0); i < 2; i++) {
+      n = appendDigit(n, 0, s);
+    }
+    if (roundUp) {
+      if (n == Long.MAX_VALUE) {
+        throw new NumberFormatException("Too large: " + s);
+      }
+      n++;
+    }
+    return negative ? -n : n;
+  }
+
+  private static long appendDigit(long n, int digit, CharSequence s) {
+    try {
+      return Math.addExact(Math.multiplyExact(n, 10), digit);
+    } catch (ArithmeticException e) {
+      throw new NumberFormatException("Too large: " + s);
+    }
+  }
+
+  private static long parseCentsSlow(String s) {
     double d = Double.parseDouble(moneyMatcher.removeFrom(s));
     d = d * 100;
 
@@ -199,7 +315,7 @@ public class Money implements Comparable<Money> {
       n = -n;
     }
 
-    return new Money(n);
+    return n;
   }
 
 }
@@ -0,0 +1,333 @@
+package ox;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static ox.util.Utils.isNullOrEmpty;
+
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.google.common.collect.Maps;
+
+import ox.util.CSVReader;
+import ox.x.XList;
+import ox.x.XMap;
+
+/**
+ * A column of Money values stored as a long[] of cents, so that summing or scaling millions of values doesn't create a
+ * Money object per value.
+ *
+ * Bulk operations return a new array and throw an ArithmeticException if any result overflows a long. The add,
+ * subtract, negate and sum loops are kept simple (no branches or calls in the body) so the JIT can vectorize them.
+ * multiply() rounds each value through Percent, so it can't be vectorized.
+ */
+public class MoneyArray implements Iterable<Money> {
+
+  private long[] cents;
+  private int size;
+
+  private MoneyArray(long[] cents, int size) {
+    this.cents = cents;
+    this.size = size;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public Money get(int index) {
+    return Money.fromLong(getCents(index));
+  }
+
+  public long getCents(int index) {
+    checkIndex(index);
+    return cents[index];
+  }
+
+  public MoneyArray set(int index, Money value) {
+    checkIndex(index);
+    cents[index] = value.toLong();
+    return this;
+  }
+
+  public MoneyArray append(Money value) {
+    return appendCents(value.toLong());
+  }
+
+  public MoneyArray appendCents(long value) {
+    if (size == cents.length) {
+      cents = Arrays.copyOf(cents, Math.max(16, size + (size >> 1)));
+    }
+    cents[size++] = value;
+    return this;
+  }
+
+  public long[] toLongArray() {
+    return Arrays.copyOf(cents, size);
+  }
+
+  public XList<Money> toList() {
+    XList<Money> ret = XList.createWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      ret.add(Money.fromLong(cents[i]));
+    }
+    return ret;
+  }
+
+  /**
+   * Adds the amount to every value.
+   */
+  public MoneyArray add(Money amount) {
+    long b = amount.toLong();
+    long[] ret = new long[size];
+    long overflow = 0;
+    for (int i = 0; i < size; i++) {
+      long a = cents[i], r = a + b;
+      ret[i] = r;
+      overflow |= (a ^ r) & (b ^ r);
+    }
+    return result(ret, overflow);
+  }
+
+  /**
+   * Adds the arrays element by element.
+   */
+  public MoneyArray add(MoneyArray other) {
+    checkSameSize(other);
+    long[] ret = new long[size];
+    long overflow = 0;
+    for (int i = 0; i < size; i++) {
+      long a = cents[i], b = other.cents[i], r = a + b;
+      ret[i] = r;
+      overflow |= (a ^ r) & (b ^ r);
+    }
+    return result(ret, overflow);
+  }
+
+  public MoneyArray subtract(Money amount) {
+    long b = amount.toLong();
+    long[] ret = new long[size];
+    long overflow = 0;
+    for (int i = 0; i < size; i++) {
+      long a = cents[i], r = a - b;
+      ret[i] = r;
+      overflow |= (a ^ b) & (a ^ r);
+    }
+    return result(ret, overflow);
+  }
+
+  public MoneyArray subtract(MoneyArray other) {
+    checkSameSize(other);
+    long[] ret = new long[size];
+    long overflow = 0;
+    for (int i = 0; i < size; i++) {
+      long a = cents[i], b = other.cents[i], r = a - b;
+      ret[i] = r;
+      overflow |= (a ^ b) & (a ^ r);
+    }
+    return result(ret, overflow);
+  }
+
+  public MoneyArray negate() {
+    long[] ret = new long[size];
+    long overflow = 0;
+    for (int i = 0; i < size; i++) {
+      long a = cents[i], r = -a;
+      ret[i] = r;
+      overflow |= a & r;
+    }
+    return result(ret, overflow);
+  }
+
+  /**
+   * Multiplies every value by the percent, rounding each result to the nearest cent with the given mode.
+   */
+  public MoneyArray multiply(Percent p, RoundingMode rounding) {
+    long[] ret = new long[size];
+    for (int i = 0; i < size; i++) {
+      ret[i] = p.multiplyCents(cents[i], rounding);
+    }
+    return new MoneyArray(ret, size);
+  }
+
+  /**
+   * @throws ArithmeticException if the total doesn't fit in a long.
+   */
+  public Money sum() {
+    // summing the high and low halves separately can't overflow (for up to 2^31 values), and tells us exactly whether
+    // the total does
+    long high = 0, low = 0;
+    for (int i = 0; i < size; i++) {
+      long v = cents[i];
+      high += v >> 32;
+      low += v & 0xFFFFFFFFL;
+    }
+    // total = high * 2^32 + low. Once low's upper bits are carried into high, the total fits in a long exactly when
+    // high fits in an int.
+    high += low >>> 32;
+    low &= 0xFFFFFFFFL;
+    if (high != (int) high) {
+      throw new ArithmeticException("long overflow");
+    }
+    return Money.fromLong(high << 32 | low);
+  }
+
+  /**
+   * Returns null if the array is empty.
+   */
+  public Money min() {
+    if (size == 0) {
+      return null;
+    }
+    long ret = Long.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      ret = Math.min(ret, cents[i]);
+    }
+    return Money.fromLong(ret);
+  }
+
+  /**
+   * Returns null if the array is empty.
+   */
+  public Money max() {
+    if (size == 0) {
+      return null;
+    }
+    long ret = Long.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      ret = Math.max(ret, cents[i]);
+    }
+    return Money.fromLong(ret);
+  }
+
+  /**
+   * Sums the values by key, where keys.get(i) is the key for the i'th value. The result keeps the order in which each
+   * key was first seen.
+   */
+  public <K> XMap<K, Money> sumBy(List<K> keys) {
+    checkArgument(keys.size() == size, "Expected " + size + " keys, but got " + keys.size());
+    Map<K, long[]> totals = Maps.newLinkedHashMap();
+    for (int i = 0; i < size; i++) {
+      long[] total = totals.computeIfAbsent(keys.get(i), k -> new long[1]);
+      total[0] = Math.addExact(total[0], cents[i]);
+    }
+    XMap<K, Money> ret = XMap.create();
+    totals.forEach((key, total) -> ret.put(key, Money.fromLong(total[0])));
+    return ret;
+  }
+
+  @Override
+  public Iterator<Money> iterator() {
+    return new Iterator<Money>() {
+      private int index = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      public Money next() {
+        return get(index++);
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return toList().toString();
+  }
+
+  private MoneyArray result(long[] values, long overflow) {
+    if (overflow < 0) {
+      throw new ArithmeticException("long overflow");
+    }
+    return new MoneyArray(values, values.length);
+  }
+
+  private void checkSameSize(MoneyArray other) {
+    checkArgument(other.size == size, "Size mismatch: " + size + " vs " + other.size);
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+    }
+  }
+
+  public static MoneyArray create() {
+    return createWithCapacity(16);
+  }
+
+  public static MoneyArray createWithCapacity(int capacity) {
+    return new MoneyArray(new long[capacity], 0);
+  }
+
+  public static MoneyArray ofCents(long... cents) {
+    return new MoneyArray(cents.clone(), cents.length);
+  }
+
+  public static MoneyArray of(Iterable<Money> values) {
+    return of(values, m -> m);
+  }
+
+  /**
+   * Null values are stored as zero.
+   */
+  public static <T> MoneyArray of(Iterable<T> items, Function<T, Money> mappingFunction) {
+    MoneyArray ret = create();
+    for (T item : items) {
+      Money m = mappingFunction.apply(item);
+      ret.appendCents(m == null ? 0 : m.toLong());
+    }
+    return ret;
+  }
+
+  /**
+   * Reads one column of a CSV. Blank cells are stored as zero.
+   */
+  public static MoneyArray fromCSV(CSVReader reader, String column) {
+    MoneyArray ret = create();
+    reader.forEachRow(row -> {
+      String s = row.get(column);
+      try {
+        ret.appendCents(isNullOrEmpty(s) ? 0 : Money.parseCents(s));
+      } catch (NumberFormatException e) {
+        throw new RuntimeException("Couldn't parse '" + s + "' as Money, for " + column + " column.", e);
+      }
+    });
+    return ret;
+  }
+
+  /**
+   * Reads a Json array of money strings (or numbers of dollars). Nulls are stored as zero.
+   */
+  public static MoneyArray fromJson(Json array) {
+    MoneyArray ret = createWithCapacity(array.size());
+    for (int i = 0; i < array.size(); i++) {
+      String s = array.get(i);
+      ret.appendCents(isNullOrEmpty(s) ? 0 : Money.parseCents(s));
+    }
+    return ret;
+  }
+
+  /**
+   * Reads the given key from each object in a Json array. Missing values are stored as zero.
+   */
+  public static MoneyArray fromJson(Json array, String key) {
+    MoneyArray ret = createWithCapacity(array.size());
+    for (Json item : array.asJsonArray()) {
+      String s = item.get(key);
+      ret.appendCents(isNullOrEmpty(s) ? 0 : Money.parseCents(s));
+    }
+    return ret;
+  }
+
+}
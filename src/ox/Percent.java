@@ -9,23 +9,42 @@ import java.util.function.Function;
 
 /**
  * Immutable class representing a fractional percentage.
+ *
+ * Values that are an exact multiple of 1e-9 (anything parsed from text with up to 7 decimal places) are also kept as a
+ * long, which comparisons, formatting and Money multiplication use instead of BigDecimal arithmetic.
  */
 public class Percent implements Comparable<Percent> {
 
   public static final Percent ZERO = new Percent(0.0), ONE_HUNDRED = new Percent(1.0);
 
+  private static final int NANOS_SCALE = 9;
+  private static final long NANOS_PER_UNIT = 1_000_000_000L;
+  private static final long NOT_COMPACT = Long.MIN_VALUE;
+
   private final BigDecimal value;
 
+  /**
+   * The value in units of 1e-9, or NOT_COMPACT if it can't be represented exactly that way.
+   */
+  private final long nanos;
+
+  /**
+   * The largest amount that can be multiplied by nanos without overflowing.
+   */
+  private final long maxCents;
+
   private Percent(double value) {
-    this.value = new BigDecimal(value);
+    this(new BigDecimal(value));
   }
 
   private Percent(String value) {
-    this.value = new BigDecimal(value);
+    this(new BigDecimal(value));
   }
 
   private Percent(BigDecimal value) {
     this.value = value;
+    this.nanos = toNanos(value);
+    this.maxCents = nanos == NOT_COMPACT ? -1 : Long.MAX_VALUE / Math.max(1, Math.abs(nanos));
   }
 
   /**
@@ -40,31 +59,37 @@ public class Percent implements Comparable<Percent> {
   }
 
   public boolean isZero() {
-    return value.compareTo(BigDecimal.ZERO) == 0;
+    return value.signum() == 0;
   }
 
   public boolean isOneHundred() {
+    if (nanos != NOT_COMPACT) {
+      return nanos == NANOS_PER_UNIT;
+    }
     return value.compareTo(BigDecimal.ONE) == 0;
   }
 
   public boolean isGreaterThan(Percent m) {
-    return this.value.compareTo(m.value) > 0;
+    return compareTo(m) > 0;
   }
 
   public boolean isLessThan(Percent m) {
-    return this.value.compareTo(m.value) < 0;
+    return compareTo(m) < 0;
   }
 
   public boolean isPositive() {
-    return isGreaterThan(Percent.ZERO);
+    return value.signum() > 0;
   }
 
   public boolean isNegative() {
-    return isLessThan(Percent.ZERO);
+    return value.signum() < 0;
   }
 
   @Override
   public int compareTo(Percent o) {
+    if (nanos != NOT_COMPACT && o.nanos != NOT_COMPACT) {
+      return Long.compare(nanos, o.nanos);
+    }
     return this.value.compareTo(o.value);
   }
 
@@ -74,16 +99,24 @@ public class Percent implements Comparable<Percent> {
   }
 
   public String formatNoDecimals() {
-    return this.value.multiply(BigDecimal.valueOf(100)).setScale(0, BigDecimal.ROUND_HALF_EVEN).toPlainString() + "%";
+    return formatWithDecimals(0);
   }
 
   public String formatWithDecimals(int nDecimals) {
+    // nanos are 1e-7 of a percent
+    if (nanos != NOT_COMPACT && nDecimals >= 0 && nDecimals <= NANOS_SCALE - 2) {
+      long rounded = divide(nanos, POWERS_OF_TEN[NANOS_SCALE - 2 - nDecimals], RoundingMode.HALF_EVEN);
+      return appendDecimal(new StringBuilder(), rounded, nDecimals, false).append('%').toString();
+    }
     return this.value.multiply(BigDecimal.valueOf(100))
         .setScale(nDecimals, RoundingMode.HALF_EVEN)
         .toPlainString() + "%";
   }
 
   public String formatWithDecimals() {
+    if (nanos != NOT_COMPACT) {
+      return appendDecimal(new StringBuilder(), nanos, NANOS_SCALE - 2, true).append('%').toString();
+    }
     return this.value.multiply(BigDecimal.valueOf(100)).stripTrailingZeros().toPlainString() + "%";
   }
 
@@ -142,6 +175,17 @@ public class Percent implements Comparable<Percent> {
     return new Percent(value.multiply(BigDecimal.valueOf(n)));
   }
 
+  /**
+   * Multiplies an amount in cents by this percent. Stays in long arithmetic when this percent is compact and the
+   * product fits in a long, otherwise uses BigDecimal. Either way the result is exact before rounding.
+   */
+  long multiplyCents(long cents, RoundingMode rounding) {
+    if (nanos != NOT_COMPACT && cents <= maxCents && cents >= -maxCents) {
+      return divide(cents * nanos, NANOS_PER_UNIT, rounding);
+    }
+    return new BigDecimal(cents).multiply(value).setScale(0, rounding).longValueExact();
+  }
+
   @Override
   public int hashCode() {
     return value.hashCode();
@@ -176,6 +220,90 @@ public class Percent implements Comparable<Percent> {
     return new Percent(1.0 * numerator.toLong() / denominator.toLong());
   }
 
+  private static long toNanos(BigDecimal value) {
+    if (value.scale() > NANOS_SCALE) {
+      if (value.signum() == 0) {
+        return 0;
+      }
+      value = value.stripTrailingZeros();
+      if (value.scale() > NANOS_SCALE) {
+        return NOT_COMPACT;
+      }
+    }
+    // keep well clear of overflow: |value| < 10^9
+    if (value.precision() - value.scale() > NANOS_SCALE) {
+      return NOT_COMPACT;
+    }
+    return value.movePointRight(NANOS_SCALE).longValueExact();
+  }
+
+  private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L,
+      100_000_000L, 1_000_000_000L };
+
+  /**
+   * numerator / divisor (divisor > 0), rounded with the given mode.
+   */
+  static long divide(long numerator, long divisor, RoundingMode rounding) {
+    long q = numerator / divisor;
+    long r = numerator % divisor;
+    if (r == 0) {
+      return q;
+    }
+    int sign = numerator < 0 ? -1 : 1;
+    boolean up;
+    if (rounding == RoundingMode.UNNECESSARY) {
+      throw new ArithmeticException("Rounding necessary");
+    } else if (rounding == RoundingMode.DOWN) {
+      up = false;
+    } else if (rounding == RoundingMode.UP) {
+      up = true;
+    } else if (rounding == RoundingMode.FLOOR) {
+      up = sign < 0;
+    } else if (rounding == RoundingMode.CEILING) {
+      up = sign > 0;
+    } else {
+      // |r| < divisor, so doubling it can't overflow as long as divisor < 2^62
+      long twice = Math.abs(r) * 2;
+      if (twice != divisor) {
+        up = twice > divisor;
+      } else if (rounding == RoundingMode.HALF_UP) {
+        up = true;
+      } else if (rounding == RoundingMode.HALF_DOWN) {
+        up = false;
+      } else {
+        up = (q & 1) != 0;
+      }
+    }
+    return up ? q + sign : q;
+  }
+
+  /**
+   * Appends n / 10^decimals as a plain decimal, e.g. (-1234, 2) -> "-12.34".
+   */
+  private static StringBuilder appendDecimal(StringBuilder sb, long n, int decimals, boolean stripTrailingZeros) {
+    if (n < 0) {
+      sb.append('-');
+    }
+    long divisor = POWERS_OF_TEN[decimals];
+    sb.append(Math.abs(n / divisor));
+    long fraction = Math.abs(n % divisor);
+    if (stripTrailingZeros) {
+      while (decimals > 0 && fraction % 10 == 0) {
+        fraction /= 10;
+        decimals--;
+      }
+    }
+    if (decimals > 0) {
+      sb.append('.');
+      String digits = Long.toString(fraction);
+      for (int i = digits.length(); i < decimals; i++) {
+        sb.append('0');
+      }
+      sb.append(digits);
+    }
+    return sb;
+  }
+
   public static Percent parse(String s) {
     if (isNullOrEmpty(s)) {
       return null;
@@ -1,43 +1,37 @@
 package ox;
 
-import static ox.util.Utils.first;
 import static ox.util.Utils.propagate;
 
-import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.net.URI;
-import java.net.URL;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.UUID;
 import java.util.function.Function;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import org.objenesis.Objenesis;
 import org.objenesis.ObjenesisStd;
+import org.objenesis.instantiator.ObjectInstantiator;
 
-import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import com.google.common.reflect.TypeToken;
 
+import ox.util.ClassIndex;
 import ox.util.Time;
 import ox.util.Utils;
 import ox.x.XList;
@@ -49,21 +43,27 @@ import sun.misc.Unsafe;
 public class Reflection {
 
   private static final Objenesis objenesis = new ObjenesisStd(true);
-  private static final Map<String, Field> fieldCache = Maps.newConcurrentMap();
-  private static final Map<String, Method> methodCache = Maps.newConcurrentMap();
+  private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
   private static final Map<Class<?>, XList<Field>> allFieldsCache = Maps.newConcurrentMap();
   private static final Table<Class<?>, Class<?>, Function<Object, Object>> converters = HashBasedTable.create();
   private static Field modifiersField;
-  private static final Map<String, Boolean> hasOverrideCache = Maps.newConcurrentMap();
+
+  /**
+   * Resolved fields and methods for each class, looked up by name without building a key.
+   */
+  private static final ClassValue<ClassInfo> classInfo = new ClassValue<ClassInfo>() {
+    @Override
+    protected ClassInfo computeValue(Class<?> c) {
+      return new ClassInfo();
+    }
+  };
 
   public static final XSet<Class<?>> BOXED_TYPES = XSet.of(Byte.class, Short.class, Integer.class, Long.class,
       Float.class, Double.class, Character.class, Boolean.class);
 
-  private static final Field NULL_FIELD;
   private static final Method NULL_METHOD;
   static {
     try {
-      NULL_FIELD = Reflection.class.getDeclaredField("fieldCache");
       NULL_METHOD = Reflection.class.getDeclaredMethod("nullMethod");
     } catch (Exception e) {
       throw propagate(e);
@@ -116,54 +116,62 @@ public class Reflection {
   }
 
   public static <T> T get(Class<?> c, String staticFieldName) {
-    Field field = getField(c, staticFieldName);
-    return get(null, field);
+    return get(null, getAccessor(c, staticFieldName));
   }
 
   public static <T> T get(Object o, String fieldName) {
-    Field field = getField(o.getClass(), fieldName);
-    return get(o, field);
+    return get(o, getAccessor(o.getClass(), fieldName));
   }
 
-  @SuppressWarnings("unchecked")
   public static <T> T get(Object o, Field field) {
     if (field == null) {
       return null;
     }
-    try {
-      field.setAccessible(true);
-      return (T) field.get(o);
-    } catch (Exception e) {
-      throw propagate(e);
-    }
+    return get(o, getAccessor(field));
+  }
+
+  private static <T> T get(Object o, FieldAccessor accessor) {
+    return accessor == null ? null : accessor.get(o);
   }
 
   /**
    * Sets a static field.
    */
   public static void set(Class<?> c, String fieldName, Object value) {
-    Field field = getField(c, fieldName);
-    try {
-      field.set(null, value);
-    } catch (IllegalArgumentException | IllegalAccessException e) {
-      throw propagate(e);
-    }
+    getAccessor(c, fieldName).setRaw(null, value);
   }
 
   public static void set(Object o, String fieldName, Object value) {
-    Field field = getField(o.getClass(), fieldName);
-    set(o, field, value);
+    getAccessor(o.getClass(), fieldName).set(o, value);
   }
 
   public static void set(Object o, Field field, Object value) {
-    try {
-      value = convert(value, field.getGenericType());
-      field.setAccessible(true);
-      field.set(o, value);
-    } catch (Exception e) {
-      Log.error("Problem setting field: " + field.getName());
-      throw new RuntimeException(e);
+    getAccessor(field).set(o, value);
+  }
+
+  /**
+   * Returns a reusable getter/setter for the field, or null if the class doesn't have it. Holding on to the accessor
+   * (e.g. in a static final field) skips even the by-name lookup.
+   */
+  public static FieldAccessor getAccessor(Class<?> c, String fieldName) {
+    ClassInfo info = classInfo.get(c);
+    FieldAccessor ret = info.accessors.get(fieldName);
+    if (ret == null) {
+      Field field = getField(c, fieldName);
+      ret = field == null ? FieldAccessor.NONE : getAccessor(field);
+      info.accessors.put(fieldName, ret);
     }
+    return ret == FieldAccessor.NONE ? null : ret;
+  }
+
+  public static FieldAccessor getAccessor(Field field) {
+    ClassInfo info = classInfo.get(field.getDeclaringClass());
+    FieldAccessor ret = info.accessors.get(field.getName());
+    if (ret == null || ret.field != field && !field.equals(ret.field)) {
+      ret = new FieldAccessor(getField(field.getDeclaringClass(), field.getName()));
+      info.accessors.put(field.getName(), ret);
+    }
+    return ret;
   }
 
   public static <T> T convert(Object value, Type targetType) {
@@ -265,21 +273,58 @@ public class Reflection {
   /**
    * Constructs an instance of the class without calling any constructors.
    */
+  @SuppressWarnings("unchecked")
   public static <T> T newInstance(Class<T> c) {
-    return objenesis.newInstance(c);
+    ClassInfo info = classInfo.get(c);
+    ObjectInstantiator<?> instantiator = info.instantiator;
+    if (instantiator == null) {
+      instantiator = info.instantiator = objenesis.getInstantiatorOf(c);
+    }
+    return (T) instantiator.newInstance();
   }
 
   /**
    * Constructs an instance of the class using its default (empty) constructor.
    */
+  @SuppressWarnings("unchecked")
   public static <T> T constructNewInstance(Class<T> c) {
+    ClassInfo info = classInfo.get(c);
     try {
-      Constructor<T> constructor = c.getDeclaredConstructor();
-      constructor.setAccessible(true);
-      return constructor.newInstance();
-    } catch (Exception e) {
-      throw propagate(e);
+      MethodHandle constructor = info.constructor;
+      if (constructor == null) {
+        Constructor<T> declared = c.getDeclaredConstructor();
+        declared.setAccessible(true);
+        constructor = info.constructor = lookup.unreflectConstructor(declared)
+            .asType(MethodType.methodType(Object.class));
+      }
+      return (T) constructor.invokeExact();
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  /**
+   * Creates one instance per row without calling any constructors, then sets each column's value into the field with
+   * the same name (converting it like set() does). Columns that don't match a field are ignored.
+   *
+   * The fields are resolved once for all the rows, so this is much faster than calling set() per value.
+   */
+  public static <T> XList<T> newInstances(Class<T> c, List<String> columns, Iterable<? extends List<?>> rows) {
+    FieldAccessor[] accessors = new FieldAccessor[columns.size()];
+    for (int i = 0; i < accessors.length; i++) {
+      accessors[i] = getAccessor(c, columns.get(i));
+    }
+    XList<T> ret = XList.create();
+    for (List<?> row : rows) {
+      T instance = newInstance(c);
+      for (int i = 0; i < accessors.length; i++) {
+        if (accessors[i] != null) {
+          accessors[i].set(instance, row.get(i));
+        }
+      }
+      ret.add(instance);
     }
+    return ret;
   }
 
   public static Field getField(Object o, String fieldName) {
@@ -287,37 +332,29 @@ public class Reflection {
   }
 
   public static Field getField(Class<?> c, String fieldName) {
-    String key = c.getName() + fieldName;
-
-    Field ret = fieldCache.get(key);
-    if (ret != null) {
-      return ret == NULL_FIELD ? null : ret;
+    Map<String, XOptional<Field>> fields = classInfo.get(c).fields;
+    XOptional<Field> ret = fields.get(fieldName);
+    if (ret == null) {
+      ret = XOptional.ofNullable(findField(c, fieldName));
+      fields.put(fieldName, ret);
     }
+    return ret.orElseNull();
+  }
 
+  private static Field findField(Class<?> c, String fieldName) {
     try {
-      ret = c.getDeclaredField(fieldName);
+      Field ret = c.getDeclaredField(fieldName);
       ret.setAccessible(true);
       if (modifiersField != null) {
         modifiersField.setInt(ret, ret.getModifiers() & ~Modifier.FINAL);
       }
+      return ret;
     } catch (NoSuchFieldException e) {
       Class<?> parent = c.getSuperclass();
-      if (parent == null) {
-        ret = null;
-      } else {
-        ret = getField(parent, fieldName);
-      }
+      return parent == null ? null : getField(parent, fieldName);
     } catch (IllegalAccessException e) {
       throw propagate(e);
     }
-
-    if (ret == null) {
-      fieldCache.put(key, NULL_FIELD);
-    } else {
-      fieldCache.put(key, ret);
-    }
-
-    return ret;
   }
 
   public static XList<Field> getFields(Class<?> c) {
@@ -353,40 +390,50 @@ public class Reflection {
   }
 
   public static Method getMethod(Class<?> c, String methodName) {
-    Method ret = methodCache.computeIfAbsent(c.getName() + methodName, s -> {
-      Method varargs = null;
-      for (Method m : c.getDeclaredMethods()) {
-        if (m.getName().equals(methodName)) {
-          if (m.isVarArgs()) {
-            varargs = m;
-          }
-          if (m.getParameterCount() == 0) {
-            m.setAccessible(true);
-            return m;
-          }
-        }
+    return getMethodInvoker(c, methodName).method;
+  }
+
+  private static MethodInvoker getMethodInvoker(Class<?> c, String methodName) {
+    Map<String, MethodInvoker> methods = classInfo.get(c).methods;
+    MethodInvoker ret = methods.get(methodName);
+    if (ret == null) {
+      Method method = findMethod(c, methodName);
+      if (method == NULL_METHOD) {
+        throw new RuntimeException("Method not found: " + c.getSimpleName() + "." + methodName);
       }
-      for (Method m : c.getMethods()) {
-        if (m.getName().equals(methodName)) {
-          if (m.getParameterCount() == 0) {
-            m.setAccessible(true);
-            return m;
-          }
+      ret = new MethodInvoker(method);
+      methods.put(methodName, ret);
+    }
+    return ret;
+  }
+
+  private static Method findMethod(Class<?> c, String methodName) {
+    Method varargs = null;
+    for (Method m : c.getDeclaredMethods()) {
+      if (m.getName().equals(methodName)) {
+        if (m.isVarArgs()) {
+          varargs = m;
+        }
+        if (m.getParameterCount() == 0) {
+          m.setAccessible(true);
+          return m;
         }
       }
-      if (varargs != null) {
-        varargs.setAccessible(true);
-        return varargs;
+    }
+    for (Method m : c.getMethods()) {
+      if (m.getName().equals(methodName)) {
+        if (m.getParameterCount() == 0) {
+          m.setAccessible(true);
+          return m;
+        }
       }
-
-      return NULL_METHOD;
-    });
-
-    if (ret == NULL_METHOD) {
-      throw new RuntimeException("Method not found: " + c.getSimpleName() + "." + methodName);
+    }
+    if (varargs != null) {
+      varargs.setAccessible(true);
+      return varargs;
     }
 
-    return ret;
+    return NULL_METHOD;
   }
 
   private static Method getDeclaredMethodByName(Class<?> c, String methodName) {
@@ -402,19 +449,17 @@ public class Reflection {
    * Returns true if the given class overrides a parent class's implementation of the given method.
    */
   public static boolean hasOverride(Class<?> c, String methodName) {
-   return hasOverrideCache.computeIfAbsent(c.getName() + methodName, key -> {
-     return getDeclaredMethodByName(c, methodName) != null;
-    });
+    Map<String, Boolean> overrides = classInfo.get(c).overrides;
+    Boolean ret = overrides.get(methodName);
+    if (ret == null) {
+      ret = getDeclaredMethodByName(c, methodName) != null;
+      overrides.put(methodName, ret);
+    }
+    return ret;
   }
 
-  @SuppressWarnings("unchecked")
   public static <T> T callMethod(Object o, String methodName) {
-    Method m = getMethod(o.getClass(), methodName);
-    try {
-      return (T) m.invoke(o);
-    } catch (Exception e) {
-      throw propagate(e);
-    }
+    return getMethodInvoker(o.getClass(), methodName).invoke(o);
   }
 
   /**
@@ -465,13 +510,19 @@ public class Reflection {
     converters.put(inputClass, outputClass, (Function<Object, Object>) converter);
   }
 
+  /**
+   * Returns the declared constructors, fewest parameters first.
+   */
   @SuppressWarnings("unchecked")
   public static <T> XList<Constructor<T>> getConstructors(Class<T> c) {
-    return XList.of((Constructor<T>[]) c.getDeclaredConstructors()).sortSelf((a, b) -> {
-      return ComparisonChain.start()
-          .compare(a.getParameterCount(), b.getParameterCount())
-          .result();
-    });
+    ClassInfo info = classInfo.get(c);
+    XList<Constructor<?>> ret = info.constructors;
+    if (ret == null) {
+      ret = info.constructors = XList.<Constructor<?>>of(c.getDeclaredConstructors())
+          .sortSelf((a, b) -> Integer.compare(a.getParameterCount(), b.getParameterCount()));
+    }
+    // copy, since callers are free to modify the list
+    return (XList<Constructor<T>>) (XList<?>) XList.create(ret);
   }
 
   @SuppressWarnings("unchecked")
@@ -485,80 +536,23 @@ public class Reflection {
     return ret;
   }
 
+  /**
+   * Finds the top-level classes in the package and its subpackages. The classes are loaded but not initialized. See
+   * ClassIndex for how jars are scanned.
+   */
   public static XList<Class<?>> findClasses(String packageName) {
     try {
       ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-      String path = packageName.replace('.', '/');
-      Enumeration<URL> resources = classLoader.getResources(path);
-      List<URI> dirs = Lists.newArrayList();
-      while (resources.hasMoreElements()) {
-        URL resource = resources.nextElement();
-        dirs.add(resource.toURI());
-      }
-      Set<String> classes = Sets.newHashSet();
-      for (URI directory : dirs) {
-        classes.addAll(findClasses(directory, packageName));
-      }
-      XList<Class<?>> classList = XList.create();
-      for (String className : classes) {
-        if (className.startsWith(packageName) && !className.contains("$")) {
-          classList.add(Class.forName(className));
-        }
+      XList<Class<?>> ret = XList.create();
+      for (String className : ClassIndex.findClassNames(packageName, classLoader)) {
+        ret.add(Class.forName(className, false, classLoader));
       }
-      return classList;
+      return ret;
     } catch (Exception e) {
       throw propagate(e);
     }
   }
 
-  private static Set<String> findClasses(URI directory, String packageName) throws Exception {
-    final String scheme = directory.getScheme();
-
-    if (scheme.equals("jar") && directory.getSchemeSpecificPart().contains("!")) {
-      return findClassesInJar(directory);
-    } else if (scheme.equals("file")) {
-      return findClassesInFileSystemDirectory(directory, packageName);
-    }
-
-    throw new IllegalStateException(
-        "cannot handle URI with scheme [" + scheme + "]" +
-            "; received directory=[" + directory + "], packageName=[" + packageName + "]");
-  }
-
-  private static Set<String> findClassesInJar(URI jarDirectory) throws Exception {
-    Set<String> ret = Sets.newHashSet();
-
-    URL jar = new URL(first(jarDirectory.getSchemeSpecificPart(), "!"));
-    ZipInputStream zip = new ZipInputStream(jar.openStream());
-    while (true) {
-      ZipEntry entry = zip.getNextEntry();
-      if (entry == null) {
-        break;
-      }
-      String name = entry.getName();
-      if (name.endsWith(".class") && !name.contains("$")) {
-        ret.add(name.substring(0, name.length() - 6).replace('/', '.'));
-      }
-    }
-
-    return ret;
-  }
-
-  private static Set<String> findClassesInFileSystemDirectory(URI fileSystemDirectory, String packageName) {
-    Set<String> ret = Sets.newHashSet();
-
-    for (File file : new File(fileSystemDirectory).listFiles()) {
-      String name = file.getName();
-      if (file.isDirectory()) {
-        ret.addAll(findClassesInFileSystemDirectory(file.getAbsoluteFile().toURI(), packageName + "." + name));
-      } else if (name.endsWith(".class")) {
-        ret.add(packageName + '.' + name.substring(0, name.length() - 6));
-      }
-    }
-
-    return ret;
-  }
-
   public static boolean isAbstract(Class<?> c) {
     return Modifier.isAbstract(c.getModifiers());
   }
@@ -608,6 +602,137 @@ public class Reflection {
     }
   }
 
+  /**
+   * A field's getter and setter, resolved once into MethodHandles.
+   */
+  public static class FieldAccessor {
+
+    private static final FieldAccessor NONE = new FieldAccessor();
+
+    public final Field field;
+    private final Type genericType;
+    private final Class<?> rawType;
+    private final MethodHandle getter, setter;
+
+    private FieldAccessor() {
+      this.field = null;
+      this.genericType = null;
+      this.rawType = null;
+      this.getter = this.setter = null;
+    }
+
+    private FieldAccessor(Field field) {
+      this.field = field;
+      this.genericType = field.getGenericType();
+      this.rawType = TypeToken.of(genericType).getRawType();
+      boolean isStatic = Modifier.isStatic(field.getModifiers());
+      this.getter = toHandle(() -> lookup.unreflectGetter(field), isStatic, MethodType.methodType(Object.class,
+          Object.class));
+      this.setter = toHandle(() -> lookup.unreflectSetter(field), isStatic, MethodType.methodType(void.class,
+          Object.class, Object.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object o) {
+      try {
+        if (getter != null) {
+          return (T) getter.invokeExact(o);
+        }
+        return (T) field.get(o);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    /**
+     * Converts the value to the field's type (see Reflection.convert) and sets it.
+     */
+    public void set(Object o, Object value) {
+      try {
+        setRaw(o, convert(value, genericType, rawType));
+      } catch (Exception e) {
+        Log.error("Problem setting field: " + field.getName());
+        throw new RuntimeException(e);
+      }
+    }
+
+    private void setRaw(Object o, Object value) {
+      try {
+        if (setter != null) {
+          setter.invokeExact(o, value);
+        } else {
+          field.set(o, value);
+        }
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    /**
+     * Adapts the handle to take (and ignore) a target for static fields, and to Object types throughout. Returns null
+     * if the handle isn't allowed (e.g. setting a static final field), in which case we fall back to the Field.
+     */
+    private static MethodHandle toHandle(HandleSupplier supplier, boolean isStatic, MethodType type) {
+      try {
+        MethodHandle ret = supplier.get();
+        if (isStatic) {
+          ret = MethodHandles.dropArguments(ret, 0, Object.class);
+        }
+        return ret.asType(type);
+      } catch (IllegalAccessException e) {
+        return null;
+      }
+    }
+  }
+
+  private static class MethodInvoker {
+    private final Method method;
+    private final MethodHandle handle;
+
+    private MethodInvoker(Method method) {
+      this.method = method;
+      MethodHandle handle = null;
+      if (method.getParameterCount() == 0) {
+        try {
+          handle = lookup.unreflect(method);
+          if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+          }
+          handle = handle.asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+          handle = null;
+        }
+      }
+      this.handle = handle;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T invoke(Object o) {
+      try {
+        if (handle != null) {
+          return (T) handle.invokeExact(o);
+        }
+        return (T) method.invoke(o);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+  }
+
+  private static class ClassInfo {
+    private volatile ObjectInstantiator<?> instantiator;
+    private volatile MethodHandle constructor;
+    private volatile XList<Constructor<?>> constructors;
+    private final Map<String, XOptional<Field>> fields = Maps.newConcurrentMap();
+    private final Map<String, FieldAccessor> accessors = Maps.newConcurrentMap();
+    private final Map<String, MethodInvoker> methods = Maps.newConcurrentMap();
+    private final Map<String, Boolean> overrides = Maps.newConcurrentMap();
+  }
+
+  private interface HandleSupplier {
+    MethodHandle get() throws IllegalAccessException;
+  }
+
   public static ClassWrapper is(Class<?> a) {
     return new ClassWrapper(a);
   }
@@ -0,0 +1,243 @@
+package ox;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static ox.util.Utils.propagate;
+import static ox.util.Utils.sleep;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+import ox.HttpRequest.HttpRequestException;
+import ox.x.XList;
+
+/**
+ * Retries HttpRequests with exponential backoff and full jitter, bounded by a process-wide RetryBudget.
+ *
+ * Because an HttpRequest is bound to a single connection, the policy takes a factory that builds a fresh request for
+ * every attempt.
+ *
+ * example: RetryPolicy.create().maxAttempts(4).hedgeAfter(Duration.ofMillis(50)).execute(() -> HttpRequest.get(url))
+ */
+public class RetryPolicy {
+
+  private static final ExecutorService hedgeExecutor = Executors.newCachedThreadPool(
+      new NamedThreadFactory(RetryPolicy.class, "hedge").daemon());
+
+  private int maxAttempts = 3;
+  private Duration initialBackoff = Duration.ofMillis(100);
+  private Duration maxBackoff = Duration.ofSeconds(5);
+  private double multiplier = 2;
+  private Duration hedgeDelay = null;
+  private RetryBudget budget = RetryBudget.DEFAULT;
+  private IntPredicate retryableStatus = status -> status == 429 || status >= 500;
+
+  private RetryPolicy() {
+  }
+
+  public RetryPolicy maxAttempts(int maxAttempts) {
+    checkArgument(maxAttempts > 0, "maxAttempts=" + maxAttempts);
+    this.maxAttempts = maxAttempts;
+    return this;
+  }
+
+  public RetryPolicy backoff(Duration initialBackoff, Duration maxBackoff) {
+    this.initialBackoff = checkNotNull(initialBackoff);
+    this.maxBackoff = checkNotNull(maxBackoff);
+    return this;
+  }
+
+  public RetryPolicy multiplier(double multiplier) {
+    checkArgument(multiplier >= 1, "multiplier=" + multiplier);
+    this.multiplier = multiplier;
+    return this;
+  }
+
+  /**
+   * If an idempotent request hasn't completed after the given delay, a duplicate is sent and whichever response arrives
+   * first wins. The loser is disconnected.
+   */
+  public RetryPolicy hedgeAfter(Duration hedgeDelay) {
+    this.hedgeDelay = hedgeDelay;
+    return this;
+  }
+
+  public RetryPolicy budget(RetryBudget budget) {
+    this.budget = checkNotNull(budget);
+    return this;
+  }
+
+  public RetryPolicy retryOn(IntPredicate retryableStatus) {
+    this.retryableStatus = checkNotNull(retryableStatus);
+    return this;
+  }
+
+  /**
+   * Returns a request whose response has been received. If every attempt returned a retryable status, the last of
+   * those responses is returned so the caller can inspect it.
+   */
+  public HttpRequest execute(Supplier<HttpRequest> requestFactory) {
+    budget.onRequest();
+
+    HttpRequest lastResponse = null;
+    HttpRequestException lastError = null;
+    for (int attempt = 0; attempt < maxAttempts; attempt++) {
+      if (attempt > 0) {
+        if (!budget.tryAcquire()) {
+          break;
+        }
+        if (lastResponse != null) {
+          lastResponse.disconnect();
+          lastResponse = null;
+        }
+        sleep(getBackoffMillis(attempt));
+      }
+      try {
+        HttpRequest request = hedgeDelay == null ? receive(requestFactory.get()) : hedge(requestFactory);
+        if (!retryableStatus.test(request.status())) {
+          return request;
+        }
+        lastResponse = request;
+        lastError = null;
+      } catch (HttpRequestException e) {
+        lastError = e;
+      }
+    }
+
+    if (lastResponse != null) {
+      return lastResponse;
+    }
+    throw lastError;
+  }
+
+  long getBackoffMillis(int attempt) {
+    double cap = initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1);
+    long max = (long) Math.min(cap, maxBackoff.toMillis());
+    return max <= 0 ? 0 : ThreadLocalRandom.current().nextLong(max + 1);
+  }
+
+  private HttpRequest hedge(Supplier<HttpRequest> requestFactory) {
+    HttpRequest primary = requestFactory.get();
+    if (!isIdempotent(primary)) {
+      return receive(primary);
+    }
+
+    CompletionService<HttpRequest> completionService = new ExecutorCompletionService<>(hedgeExecutor);
+    XList<HttpRequest> requests = XList.of(primary);
+    XList<Future<HttpRequest>> futures = XList.of(completionService.submit(() -> receive(primary)));
+
+    try {
+      Future<HttpRequest> done = completionService.poll(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS);
+      if (done == null && budget.tryAcquire()) {
+        HttpRequest hedged = requestFactory.get();
+        requests.add(hedged);
+        futures.add(completionService.submit(() -> receive(hedged)));
+      }
+
+      ExecutionException error = null;
+      for (int remaining = futures.size(); remaining > 0; remaining--) {
+        if (done == null) {
+          done = completionService.take();
+        }
+        try {
+          HttpRequest winner = done.get();
+          cancelOthers(requests, futures, winner);
+          return winner;
+        } catch (ExecutionException e) {
+          error = e;
+        }
+        done = null;
+      }
+      throw propagate(error.getCause());
+    } catch (InterruptedException e) {
+      cancelOthers(requests, futures, null);
+      throw propagate(e);
+    }
+  }
+
+  private void cancelOthers(XList<HttpRequest> requests, XList<Future<HttpRequest>> futures, HttpRequest winner) {
+    for (int i = 0; i < requests.size(); i++) {
+      HttpRequest request = requests.get(i);
+      if (request != winner) {
+        futures.get(i).cancel(true);
+        try {
+          request.disconnect();
+        } catch (Exception e) {
+          // the loser may already be closed
+        }
+      }
+    }
+  }
+
+  private static HttpRequest receive(HttpRequest request) {
+    request.status();
+    return request;
+  }
+
+  private static boolean isIdempotent(HttpRequest request) {
+    String method = request.method();
+    return method.equals(HttpRequest.METHOD_GET) || method.equals(HttpRequest.METHOD_HEAD)
+        || method.equals(HttpRequest.METHOD_OPTIONS);
+  }
+
+  public static RetryPolicy create() {
+    return new RetryPolicy();
+  }
+
+  /**
+   * A token bucket that limits retries (and hedges) to a fraction of the overall request volume, so that a struggling
+   * upstream doesn't get hit with a retry storm.
+   */
+  public static class RetryBudget {
+
+    /**
+     * Shared by every RetryPolicy that doesn't specify its own budget: each request earns 0.1 retries, up to 10.
+     */
+    public static final RetryBudget DEFAULT = new RetryBudget(0.1, 10);
+
+    private static final long SCALE = 1000;
+
+    private final long tokensPerRequest;
+    private final long maxTokens;
+    private final AtomicLong tokens;
+
+    public RetryBudget(double retriesPerRequest, int maxRetries) {
+      checkArgument(retriesPerRequest >= 0, "retriesPerRequest=" + retriesPerRequest);
+      checkArgument(maxRetries >= 0, "maxRetries=" + maxRetries);
+      this.tokensPerRequest = (long) (retriesPerRequest * SCALE);
+      this.maxTokens = maxRetries * SCALE;
+      this.tokens = new AtomicLong(maxTokens);
+    }
+
+    public void onRequest() {
+      tokens.accumulateAndGet(tokensPerRequest, (current, delta) -> Math.min(maxTokens, current + delta));
+    }
+
+    public boolean tryAcquire() {
+      while (true) {
+        long current = tokens.get();
+        if (current < SCALE) {
+          return false;
+        }
+        if (tokens.compareAndSet(current, current - SCALE)) {
+          return true;
+        }
+      }
+    }
+
+    public double getAvailable() {
+      return tokens.get() / (double) SCALE;
+    }
+  }
+
+}
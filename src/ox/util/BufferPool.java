@@ -0,0 +1,46 @@
+package ox.util;
+
+/**
+ * Hands out reusable byte arrays so that hot IO paths don't allocate a fresh buffer on every call.
+ *
+ * Each thread keeps at most one idle buffer. take() removes it from the pool, so nested users on the same thread each
+ * get their own array. Buffers larger than MAX_RETAINED_SIZE are left for the garbage collector.
+ */
+public class BufferPool {
+
+  public static final int DEFAULT_SIZE = 8192;
+
+  public static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<byte[]> idle = new ThreadLocal<>();
+
+  /**
+   * Returns a buffer at least minSize long. It may contain garbage from a previous user.
+   */
+  public static byte[] take(int minSize) {
+    byte[] ret = idle.get();
+    if (ret != null && ret.length >= minSize) {
+      idle.set(null);
+      return ret;
+    }
+    return new byte[Math.max(minSize, DEFAULT_SIZE)];
+  }
+
+  public static byte[] take() {
+    return take(DEFAULT_SIZE);
+  }
+
+  /**
+   * Returns a buffer to the pool. The caller must not touch it afterwards.
+   */
+  public static void give(byte[] buffer) {
+    if (buffer.length > MAX_RETAINED_SIZE) {
+      return;
+    }
+    byte[] current = idle.get();
+    if (current == null || current.length < buffer.length) {
+      idle.set(buffer);
+    }
+  }
+
+}
@@ -22,9 +22,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
-import com.google.common.base.CharMatcher;
-import com.google.common.base.Splitter;
-
 import ox.IO;
 import ox.Json;
 import ox.Log;
@@ -247,7 +244,8 @@ public class CSVReader {
     }
 
     public LocalDate getDate(String colName) {
-      if (get(colName).contains("/") || get(colName).contains("-")) {
+      String val = get(colName);
+      if (val.indexOf('/') != -1 || val.indexOf('-') != -1) {
         return getParsedDate(colName);
       } else {
         return getExcelDate(colName);
@@ -264,7 +262,7 @@ public class CSVReader {
       }
 
       try {
-        return LocalDate.parse(val);
+        return Time.parseISODate(val);
       } catch (Exception e) {
         throw new RuntimeException(format("Couldn't parse '{0}' as Date, for {1} column.", val, colName));
       }
@@ -303,31 +301,56 @@ public class CSVReader {
         return null;
       }
 
-      List<String> parsedDate = Splitter.on(CharMatcher.anyOf("-/")).splitToList(val);
-      if (parsedDate.get(0).length() == 4) {
+      int first = indexOfSeparator(val, 0);
+      if (first == 4) {
         // YYYY-MM-DD
         return getISODate(colName);
       }
 
-      int year;
-      if (parsedDate.get(2).length() == 2) {
-        // MM/DD/YY
-        // MM-DD-YY
-        year = Integer.parseInt(parsedDate.get(2)) > 50 ? Integer.parseInt(parsedDate.get(2)) + 1900
-            : Integer.parseInt(parsedDate.get(2)) + 2000;
-      } else {
-        // MM/DD/YYYY
-        // MM-DD-YYYY
-        year = Integer.parseInt(parsedDate.get(2));
-      }
-
       try {
-        return LocalDate.of(year, Integer.parseInt(parsedDate.get(0)), Integer.parseInt(parsedDate.get(1)));
+        int second = indexOfSeparator(val, first + 1);
+        int end = indexOfSeparator(val, second + 1);
+        if (end == -1) {
+          end = val.length();
+        }
+        int year = parseNumber(val, second + 1, end);
+        if (end - second - 1 == 2) {
+          // MM/DD/YY
+          // MM-DD-YY
+          year += year > 50 ? 1900 : 2000;
+        }
+        // otherwise MM/DD/YYYY or MM-DD-YYYY
+        return LocalDate.of(year, parseNumber(val, 0, first), parseNumber(val, first + 1, second));
       } catch (Exception e) {
         throw new RuntimeException(format("Couldn't parse '{0}' as Date, for {1} column.", val, colName));
       }
     }
 
+    private static int indexOfSeparator(String s, int from) {
+      for (int i = from; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (c == '-' || c == '/') {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private static int parseNumber(String s, int start, int end) {
+      if (start < 0 || start >= end) {
+        throw new NumberFormatException(s);
+      }
+      int ret = 0;
+      for (int i = start; i < end; i++) {
+        char c = s.charAt(i);
+        if (c < '0' || c > '9' || ret > 100_000) {
+          throw new NumberFormatException(s);
+        }
+        ret = ret * 10 + (c - '0');
+      }
+      return ret;
+    }
+
     public Money getMoney(String colName) {
       String val = get(colName);
       try {
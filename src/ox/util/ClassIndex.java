@@ -0,0 +1,268 @@
+package ox.util;
+
+import static ox.util.Utils.first;
+import static ox.util.Utils.propagate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import ox.File;
+import ox.IO;
+import ox.Json;
+import ox.Log;
+import ox.Threads;
+import ox.x.XList;
+
+/**
+ * Lists the classes in a package, for Reflection.findClasses().
+ *
+ * Jars are read from their central directory with ZipFile instead of being streamed end to end, and several jars are
+ * read in parallel. The class names found in each jar are saved to an index file keyed by the jar's path, size and
+ * modified time, so a warm start only rescans jars that changed. Directories (e.g. an IDE's build output) change all
+ * the time, so they're always walked.
+ */
+public class ClassIndex {
+
+  private static final int VERSION = 1;
+  private static final int MAX_THREADS = 8;
+
+  /**
+   * Set on first use, so that just loading this class doesn't create the app folder.
+   */
+  private static File indexFile;
+  private static boolean indexFileSet = false;
+  private static Map<String, JarClasses> jars;
+
+  /**
+   * Where the index is saved. Defaults to class-index.json in the user's ox app folder (see File.appFolder()). Pass
+   * null to keep the index in memory only.
+   *
+   * Only this user should be able to write to the folder. Anyone who can write the index can make findClassNames()
+   * return classes that aren't there.
+   */
+  public static synchronized void setIndexFile(File file) {
+    indexFile = file;
+    indexFileSet = true;
+    jars = null;
+  }
+
+  /**
+   * Returns the names of the top-level classes in the package and its subpackages.
+   */
+  public static synchronized XList<String> findClassNames(String packageName, ClassLoader classLoader) {
+    try {
+      Enumeration<URL> resources = classLoader.getResources(packageName.replace('.', '/'));
+      Set<String> ret = Sets.newLinkedHashSet();
+      XList<java.io.File> jarFiles = XList.create();
+      while (resources.hasMoreElements()) {
+        URI uri = resources.nextElement().toURI();
+        String scheme = uri.getScheme();
+        if (scheme.equals("jar") && uri.getSchemeSpecificPart().contains("!")) {
+          URI jar = new URI(first(uri.getSchemeSpecificPart(), "!"));
+          if ("file".equals(jar.getScheme())) {
+            jarFiles.add(new java.io.File(jar));
+          } else {
+            ret.addAll(streamJar(jar.toURL()));
+          }
+        } else if (scheme.equals("file")) {
+          walkDirectory(Paths.get(uri), packageName, ret);
+        } else {
+          throw new IllegalStateException("cannot handle URI with scheme [" + scheme + "]" +
+              "; received directory=[" + uri + "], packageName=[" + packageName + "]");
+        }
+      }
+
+      for (JarClasses jar : getJars(jarFiles)) {
+        ret.addAll(jar.classes);
+      }
+      return XList.create(ret).filter(name -> name.startsWith(packageName));
+    } catch (Exception e) {
+      throw propagate(e);
+    }
+  }
+
+  private static XList<JarClasses> getJars(XList<java.io.File> files) {
+    if (jars == null) {
+      jars = load();
+    }
+    XList<java.io.File> stale = files.filter(file -> {
+      JarClasses jar = jars.get(file.getPath());
+      return jar == null || !jar.matches(file);
+    });
+    if (stale.size() == 1) {
+      readJar(stale.get(0));
+    } else if (stale.size() > 1) {
+      Threads.get(Math.min(stale.size(), MAX_THREADS)).input(stale).run(ClassIndex::readJar);
+    }
+    if (!stale.isEmpty()) {
+      save();
+    }
+    return files.map(file -> jars.get(file.getPath()));
+  }
+
+  private static void readJar(java.io.File file) {
+    XList<String> classes = XList.create();
+    try (ZipFile zip = new ZipFile(file)) {
+      zip.stream().forEach(entry -> {
+        String className = toClassName(entry.getName());
+        if (className != null) {
+          classes.add(className);
+        }
+      });
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+    jars.put(file.getPath(), new JarClasses(file.length(), file.lastModified(), classes));
+  }
+
+  /**
+   * For jars that aren't plain files (e.g. nested inside another jar). These aren't indexed.
+   */
+  private static XList<String> streamJar(URL jar) throws IOException {
+    XList<String> ret = XList.create();
+    try (ZipInputStream zip = new ZipInputStream(jar.openStream())) {
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        String className = toClassName(entry.getName());
+        if (className != null) {
+          ret.add(className);
+        }
+      }
+    }
+    return ret;
+  }
+
+  private static void walkDirectory(Path directory, String packageName, Set<String> ret) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.forEach(path -> {
+        String className = toClassName(directory.relativize(path).toString().replace(java.io.File.separatorChar, '/'));
+        if (className != null) {
+          ret.add(packageName + '.' + className);
+        }
+      });
+    }
+  }
+
+  /**
+   * Returns null for anything that isn't a top-level class.
+   */
+  private static String toClassName(String path) {
+    if (!path.endsWith(".class") || path.contains("$")) {
+      return null;
+    }
+    return path.substring(0, path.length() - 6).replace('/', '.');
+  }
+
+  private static Map<String, JarClasses> load() {
+    Map<String, JarClasses> ret = Maps.newConcurrentMap();
+    if (!indexFileSet) {
+      indexFile = File.appFolder("ox", "class-index.json");
+      indexFileSet = true;
+    }
+    if (indexFile == null || !indexFile.exists()) {
+      return ret;
+    }
+    try {
+      if (!isOwnedByCurrentUser(indexFile)) {
+        Log.warn("Ignoring class index that belongs to another user: " + indexFile);
+        return ret;
+      }
+      Json json = IO.from(indexFile).toJson();
+      if (json.getInt("version", 0) != VERSION) {
+        return ret;
+      }
+      Json jarsJson = json.getJson("jars");
+      for (String path : jarsJson) {
+        Json jar = jarsJson.getJson(path);
+        ret.put(path, new JarClasses(jar.getLong("size"), jar.getLong("modified"), jar.getJson("classes")
+            .asStringArray()));
+      }
+    } catch (Exception e) {
+      // a corrupt index just means we rescan
+      Log.warn("Ignoring class index: " + indexFile + " (" + e + ")");
+      ret.clear();
+    }
+    return ret;
+  }
+
+  /**
+   * Writes to a temporary file and renames it into place, so that other processes never read a partial index.
+   */
+  private static void save() {
+    if (indexFile == null) {
+      return;
+    }
+    Json jarsJson = Json.object();
+    jars.forEach((path, jar) -> {
+      if (new java.io.File(path).exists()) {
+        jarsJson.with(path, Json.object()
+            .with("size", jar.size)
+            .with("modified", jar.modified)
+            .with("classes", jar.classes));
+      }
+    });
+    Json json = Json.object().with("version", VERSION).with("jars", jarsJson);
+    try {
+      indexFile.parent().mkdirs();
+      // unique per process, since several apps can share the index
+      Path temp = Files.createTempFile(indexFile.parent().file.toPath(), indexFile.getName(), ".tmp");
+      IO.from(json.toString()).to(File.of(temp.toFile()));
+      try {
+        Files.move(temp, indexFile.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, indexFile.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (Exception e) {
+      // the index is only a cache, so failing to save it shouldn't fail the scan
+      Log.warn("Couldn't save class index: " + indexFile + " (" + e + ")");
+    }
+  }
+
+  /**
+   * Only checked where files have POSIX owners. Elsewhere (e.g. Windows), the file may legitimately belong to a group.
+   */
+  private static boolean isOwnedByCurrentUser(File file) throws IOException {
+    if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      return true;
+    }
+    UserPrincipal owner = Files.getOwner(file.file.toPath());
+    UserPrincipal user = FileSystems.getDefault().getUserPrincipalLookupService()
+        .lookupPrincipalByName(System.getProperty("user.name"));
+    return owner.equals(user);
+  }
+
+  private static class JarClasses {
+    private final long size, modified;
+    private final List<String> classes;
+
+    private JarClasses(long size, long modified, List<String> classes) {
+      this.size = size;
+      this.modified = modified;
+      this.classes = classes;
+    }
+
+    private boolean matches(java.io.File file) {
+      return file.length() == size && file.lastModified() == modified;
+    }
+  }
+
+}
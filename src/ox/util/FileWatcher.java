@@ -0,0 +1,380 @@
+package ox.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static ox.util.Utils.propagate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.google.common.collect.Maps;
+
+import ox.File;
+import ox.Log;
+import ox.NamedThreadFactory;
+import ox.Threads;
+import ox.x.XList;
+
+/**
+ * A feed of create/modify/delete events for a directory, so callers don't have to rescan it in a loop.
+ *
+ * Events are debounced: they are collected until the directory has been quiet for the debounce period, and multiple
+ * events for the same path are coalesced (e.g. a file that is created and then written shows up as one CREATED). Each
+ * batch is delivered on a dedicated callback thread, in order.
+ *
+ * Uses the OS WatchService when it is native. Where it isn't (e.g. the JDK's polling implementation on macOS), or if a
+ * directory can't be watched, falls back to diffing the sizes and modification times of the tree.
+ *
+ * example: File.ofPath("inbox").watch().start(events -> events.forEach(Log::debug))
+ */
+public class FileWatcher implements Closeable {
+
+  public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(2);
+
+  public static enum EventType {
+    CREATED, MODIFIED, DELETED;
+  }
+
+  public static class FileEvent {
+    public final File file;
+    public final EventType type;
+
+    public FileEvent(File file, EventType type) {
+      this.file = file;
+      this.type = type;
+    }
+
+    @Override
+    public String toString() {
+      return type + " " + file;
+    }
+  }
+
+  private final Path root;
+  private boolean recursive = true;
+  private Duration debounce = Duration.ofMillis(100);
+  private Duration pollInterval = null;
+
+  private Consumer<XList<FileEvent>> callback;
+  private ExecutorService callbackExecutor;
+  private Thread thread;
+  private volatile boolean closed = false;
+
+  // only touched by the watcher thread (after start)
+  private WatchService watchService;
+  private final Map<WatchKey, Path> keys = Maps.newHashMap();
+  private final Map<Path, EventType> pending = Maps.newLinkedHashMap();
+  private long firstPendingNanos;
+  private Map<Path, Stamp> snapshot;
+
+  public FileWatcher(File root) {
+    this.root = root.file.toPath();
+  }
+
+  public FileWatcher recursive(boolean recursive) {
+    this.recursive = recursive;
+    return this;
+  }
+
+  public FileWatcher debounce(Duration debounce) {
+    this.debounce = checkNotNull(debounce);
+    return this;
+  }
+
+  /**
+   * Skips the WatchService and polls the tree at the given interval instead.
+   */
+  public FileWatcher poll(Duration pollInterval) {
+    this.pollInterval = checkNotNull(pollInterval);
+    return this;
+  }
+
+  public FileWatcher start(Consumer<XList<FileEvent>> callback) {
+    checkState(this.callback == null, "This watcher has already been started.");
+    checkState(Files.isDirectory(root), root + " is not a directory.");
+    this.callback = checkNotNull(callback);
+    this.callbackExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory(FileWatcher.class, "callback")
+        .daemon());
+
+    if (pollInterval == null) {
+      try {
+        startWatchService();
+      } catch (Exception e) {
+        Log.warn("Could not watch " + root + ", falling back to polling. " + e.getMessage());
+        closeWatchService();
+        pollInterval = DEFAULT_POLL_INTERVAL;
+      }
+    }
+    if (pollInterval != null) {
+      snapshot = scan();
+    }
+
+    thread = new NamedThreadFactory(FileWatcher.class).daemon().newThread(() -> {
+      try {
+        if (watchService != null) {
+          watchLoop();
+        } else {
+          pollLoop();
+        }
+      } catch (Throwable t) {
+        if (!closed) {
+          Log.error(t);
+        }
+      }
+    });
+    thread.start();
+    return this;
+  }
+
+  public boolean isPolling() {
+    return watchService == null;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    closeWatchService();
+    if (thread != null) {
+      thread.interrupt();
+    }
+    if (callbackExecutor != null) {
+      callbackExecutor.shutdown();
+    }
+  }
+
+  private void startWatchService() throws IOException {
+    watchService = root.getFileSystem().newWatchService();
+    if (watchService.getClass().getName().contains("Polling")) {
+      throw new IOException("The WatchService on this platform is polling based.");
+    }
+    register(root, false);
+  }
+
+  private void closeWatchService() {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        Log.error(e);
+      }
+      watchService = null;
+    }
+  }
+
+  /**
+   * Registers the directory (and its subdirectories if recursive).
+   *
+   * @param reportContents true for directories that appeared after we started watching, whose contents may have been
+   *                       created before we could register them.
+   */
+  private void register(Path dir, boolean reportContents) throws IOException {
+    if (!recursive) {
+      keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+      return;
+    }
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attributes) throws IOException {
+        keys.put(d.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), d);
+        if (reportContents && !d.equals(dir)) {
+          add(d, EventType.CREATED);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+        if (reportContents) {
+          add(file, EventType.CREATED);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private void watchLoop() throws IOException {
+    long debounceMillis = Math.max(1, debounce.toMillis());
+    long maxDelayNanos = debounce.toNanos() * 10;
+    while (!closed) {
+      WatchKey key;
+      try {
+        key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+
+      if (key != null) {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == OVERFLOW) {
+            Log.warn("FileWatcher: too many events, some changes in " + root + " were missed.");
+            continue;
+          }
+          if (dir == null) {
+            continue;
+          }
+          Path path = dir.resolve((Path) event.context());
+          if (event.kind() == ENTRY_CREATE) {
+            add(path, EventType.CREATED);
+            if (recursive && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+              try {
+                register(path, true);
+              } catch (IOException e) {
+                // the directory was removed before we could watch it
+              }
+            }
+          } else if (event.kind() == ENTRY_MODIFY) {
+            if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+              add(path, EventType.MODIFIED);
+            }
+          } else if (event.kind() == ENTRY_DELETE) {
+            add(path, EventType.DELETED);
+          }
+        }
+        if (!key.reset()) {
+          keys.remove(key);
+        }
+      }
+
+      if (!pending.isEmpty() && (key == null || System.nanoTime() - firstPendingNanos > maxDelayNanos)) {
+        flush();
+      }
+    }
+  }
+
+  private void pollLoop() {
+    while (!closed) {
+      try {
+        Thread.sleep(pollInterval.toMillis());
+      } catch (InterruptedException e) {
+        return;
+      }
+      Map<Path, Stamp> current = scan();
+      snapshot.forEach((path, stamp) -> {
+        Stamp now = current.get(path);
+        if (now == null) {
+          add(path, EventType.DELETED);
+        } else if (!now.equals(stamp) && !now.directory) {
+          add(path, EventType.MODIFIED);
+        }
+      });
+      current.forEach((path, stamp) -> {
+        if (!snapshot.containsKey(path)) {
+          add(path, EventType.CREATED);
+        }
+      });
+      snapshot = current;
+      if (!pending.isEmpty()) {
+        flush();
+      }
+    }
+  }
+
+  private Map<Path, Stamp> scan() {
+    Map<Path, Stamp> ret = Maps.newHashMap();
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+          if (dir.equals(root)) {
+            return FileVisitResult.CONTINUE;
+          }
+          ret.put(dir, new Stamp(attributes));
+          return recursive ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+          ret.put(file, new Stamp(attributes));
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          // deleted while we were scanning
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+    return ret;
+  }
+
+  private void add(Path path, EventType type) {
+    if (File.ignoreDSStore && path.getFileName().toString().equals(".DS_Store")) {
+      return;
+    }
+    if (pending.isEmpty()) {
+      firstPendingNanos = System.nanoTime();
+    }
+    EventType previous = pending.get(path);
+    if (previous == null) {
+      pending.put(path, type);
+    } else if (previous == EventType.CREATED) {
+      if (type == EventType.DELETED) {
+        pending.remove(path);
+      }
+    } else if (previous == EventType.DELETED && type == EventType.CREATED) {
+      pending.put(path, EventType.MODIFIED);
+    } else {
+      pending.put(path, type);
+    }
+  }
+
+  private void flush() {
+    XList<FileEvent> events = XList.createWithCapacity(pending.size());
+    pending.forEach((path, type) -> events.add(new FileEvent(File.of(path.toFile()), type)));
+    pending.clear();
+    if (!events.isEmpty() && !closed) {
+      callbackExecutor.execute(Threads.wrap(() -> callback.accept(events)));
+    }
+  }
+
+  private static class Stamp {
+    private final long size;
+    private final long lastModified;
+    private final boolean directory;
+
+    private Stamp(BasicFileAttributes attributes) {
+      this.size = attributes.size();
+      this.lastModified = attributes.lastModifiedTime().toMillis();
+      this.directory = attributes.isDirectory();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Stamp)) {
+        return false;
+      }
+      Stamp other = (Stamp) o;
+      return size == other.size && lastModified == other.lastModified && directory == other.directory;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(lastModified);
+    }
+  }
+
+}
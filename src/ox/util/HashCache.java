@@ -0,0 +1,242 @@
+package ox.util;
+
+import static ox.util.Utils.propagate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import ox.File;
+import ox.Log;
+import ox.NamedThreadFactory;
+import ox.Threads;
+import ox.x.XList;
+import ox.x.XMap;
+
+/**
+ * Remembers the SHA-256 of files, keyed by path and validated by size, modification time and (where the filesystem
+ * provides one) inode. Hashing a file that hasn't changed costs one stat and no reads.
+ *
+ * The cache is persisted as a tab separated file and saved in the background a few seconds after it changes.
+ *
+ * example: HashCache.load("myapp").hash(file)
+ */
+public class HashCache {
+
+  private static final Map<String, HashCache> caches = Maps.newConcurrentMap();
+
+  private static final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(
+      new NamedThreadFactory(HashCache.class, "save").daemon());
+
+  private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+  private final File cacheFile;
+  private final Map<String, Entry> entries = Maps.newConcurrentMap();
+  private final AtomicBoolean saveScheduled = new AtomicBoolean(false);
+
+  private HashCache(File cacheFile) {
+    this.cacheFile = cacheFile;
+    if (cacheFile.exists()) {
+      read();
+    }
+  }
+
+  public String hash(File file) {
+    String path = file.file.getAbsolutePath();
+    BasicFileAttributes before = stat(file);
+    Entry entry = entries.get(path);
+    if (entry != null && entry.matches(before)) {
+      return entry.hash;
+    }
+
+    String ret = computeHash(file);
+
+    // if the file changed while we were reading it, don't cache the result
+    if (Entry.of(before, ret).matches(stat(file))) {
+      entries.put(path, Entry.of(before, ret));
+      scheduleSave();
+    }
+    return ret;
+  }
+
+  /**
+   * Hashes the files on multiple threads. Unchanged files are answered from the cache.
+   */
+  public XMap<File, String> hashAll(Collection<File> files, int numThreads) {
+    Map<File, String> ret = Maps.newConcurrentMap();
+    Threads.get(numThreads).input(XList.create(files)).run(file -> ret.put(file, hash(file)));
+    return XMap.create(ret);
+  }
+
+  /**
+   * Forgets any entries for files that no longer exist.
+   */
+  public HashCache prune() {
+    entries.keySet().removeIf(path -> !new java.io.File(path).exists());
+    scheduleSave();
+    return this;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Writes the cache to disk now. The file is written to a temporary sibling and then renamed into place, so a crash
+   * never leaves a partial cache.
+   */
+  public synchronized void save() {
+    saveScheduled.set(false);
+    File temp = cacheFile.sibling(cacheFile.getName() + ".tmp");
+    cacheFile.parent().mkdirs();
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(temp.outputStream(), StandardCharsets.UTF_8))) {
+      for (Map.Entry<String, Entry> e : entries.entrySet()) {
+        String path = e.getKey();
+        if (path.indexOf('\t') != -1 || path.indexOf('\n') != -1) {
+          continue;
+        }
+        Entry entry = e.getValue();
+        writer.write(path + '\t' + entry.size + '\t' + entry.lastModified + '\t' + entry.fileKey + '\t' + entry.hash
+            + '\n');
+      }
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+    try {
+      Files.move(temp.file.toPath(), cacheFile.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      temp.rename(cacheFile);
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+  }
+
+  private void scheduleSave() {
+    if (saveScheduled.compareAndSet(false, true)) {
+      saver.schedule(() -> {
+        try {
+          save();
+        } catch (Throwable t) {
+          Log.error(t);
+        }
+      }, 5, TimeUnit.SECONDS);
+    }
+  }
+
+  private void read() {
+    Splitter splitter = Splitter.on('\t');
+    try (BufferedReader br = new BufferedReader(
+        new InputStreamReader(cacheFile.inputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        List<String> m = splitter.splitToList(line);
+        if (m.size() != 5) {
+          continue;
+        }
+        entries.put(m.get(0), new Entry(Long.parseLong(m.get(1)), Long.parseLong(m.get(2)), m.get(3), m.get(4)));
+      }
+    } catch (Exception e) {
+      Log.warn("Problem reading hash cache, starting over: " + cacheFile);
+      entries.clear();
+    }
+  }
+
+  private static BasicFileAttributes stat(File file) {
+    try {
+      return Files.readAttributes(file.file.toPath(), BasicFileAttributes.class);
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+  }
+
+  /**
+   * Reads the file through a 1MB buffer and returns its SHA-256 in hex.
+   */
+  public static String computeHash(File file) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    byte[] array = BufferPool.take(READ_BUFFER_SIZE);
+    try (FileChannel channel = FileChannel.open(file.file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.wrap(array);
+      while (channel.read(buffer) != -1) {
+        // cast so that the Java 8 Buffer methods are called, not the ByteBuffer overrides added in Java 9
+        ((Buffer) buffer).flip();
+        hasher.putBytes(array, 0, buffer.limit());
+        ((Buffer) buffer).clear();
+      }
+    } catch (IOException e) {
+      throw propagate(e);
+    } finally {
+      BufferPool.give(array);
+    }
+    return hasher.hash().toString();
+  }
+
+  public static HashCache load(String appName) {
+    return load(File.appFolder(appName, "hash-cache.tsv"));
+  }
+
+  public static HashCache load(File cacheFile) {
+    return caches.computeIfAbsent(cacheFile.getPath(), s -> new HashCache(cacheFile));
+  }
+
+  private static class Entry {
+    private final long size;
+    private final long lastModified;
+    private final String fileKey;
+    private final String hash;
+
+    private Entry(long size, long lastModified, String fileKey, String hash) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.fileKey = fileKey;
+      this.hash = hash;
+    }
+
+    private boolean matches(BasicFileAttributes attributes) {
+      return size == attributes.size() && lastModified == lastModified(attributes)
+          && fileKey.equals(fileKey(attributes));
+    }
+
+    private static Entry of(BasicFileAttributes attributes, String hash) {
+      return new Entry(attributes.size(), lastModified(attributes), fileKey(attributes), hash);
+    }
+
+    private static long lastModified(BasicFileAttributes attributes) {
+      return attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * On unix this includes the device and inode, e.g. "(dev=803,ino=1234)". Empty where it isn't available.
+     */
+    private static String fileKey(BasicFileAttributes attributes) {
+      Object ret = attributes.fileKey();
+      return ret == null ? "" : ret.toString();
+    }
+  }
+
+}
@@ -1,17 +1,41 @@
 package ox.util;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static ox.util.Utils.propagate;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableSet;
 
+import ox.File;
+import ox.IO;
 import ox.Log;
+import ox.Threads;
+import ox.util.RowTiles.TileConsumer;
 
 public class Images {
 
@@ -31,13 +55,108 @@ public class Images {
   }
 
   public static BufferedImage createThumbnail(BufferedImage bi, int targetDimensions) {
-    int width = bi.getWidth();
-    int height = bi.getHeight();
+    Dimension size = thumbnailSize(bi.getWidth(), bi.getHeight(), targetDimensions);
+    return resize(bi, size.width, size.height);
+  }
+
+  /**
+   * Like createThumbnail(BufferedImage), but only decodes as many pixels as the thumbnail needs (see read()). For a
+   * large JPEG this takes a fraction of the time and memory of decoding the whole image.
+   */
+  public static BufferedImage createThumbnail(File file, int targetDimensions) {
+    BufferedImage ret = withReader(file, reader -> {
+      Dimension size = thumbnailSize(reader.getWidth(0), reader.getHeight(0), targetDimensions);
+      // decode at twice the final size, so that resize() still has pixels to average
+      int subsampling = subsampling(reader.getWidth(0), reader.getHeight(0), size.width * 2, size.height * 2);
+      return resize(reader.read(0, readParam(reader, null, subsampling)), size.width, size.height);
+    });
+    return ret != null ? ret : createThumbnail(IO.from(file).toImage(), targetDimensions);
+  }
+
+  /**
+   * Creates thumbnails for many files on multiple threads, handing each one to the callback (from that thread) as soon
+   * as it's made. Each thread only holds one subsampled image at a time, so memory stays bounded no matter how many
+   * files there are.
+   */
+  public static void createThumbnails(List<File> files, int targetDimensions, int numThreads,
+      BiConsumer<File, BufferedImage> callback) {
+    if (files.isEmpty()) {
+      return;
+    }
+    Threads.get(Math.min(numThreads, files.size())).input(files)
+        .run(file -> callback.accept(file, createThumbnail(file, targetDimensions)));
+  }
+
+  /**
+   * Decodes part of an image at reduced resolution. Only the pixels in the region (or the whole image, if it's null)
+   * are read, and rows and columns are skipped for as long as the result is still at least minWidth x minHeight.
+   */
+  public static BufferedImage read(File file, Rectangle region, int minWidth, int minHeight) {
+    checkArgument(minWidth > 0 && minHeight > 0, "minWidth=" + minWidth + ", minHeight=" + minHeight);
+    BufferedImage ret = withReader(file, reader -> {
+      int width = region == null ? reader.getWidth(0) : region.width;
+      int height = region == null ? reader.getHeight(0) : region.height;
+      return reader.read(0, readParam(reader, region, subsampling(width, height, minWidth, minHeight)));
+    });
+    if (ret == null) {
+      ret = IO.from(file).toImage();
+      if (region != null) {
+        ret = ret.getSubimage(region.x, region.y, region.width, region.height);
+      }
+    }
+    return ret;
+  }
+
+  private static Dimension thumbnailSize(int width, int height, int targetDimensions) {
     while (width > targetDimensions * 2 || height > targetDimensions * 2) {
       width /= 2;
       height /= 2;
     }
-    return resize(bi, width, height);
+    return new Dimension(width, height);
+  }
+
+  /**
+   * The largest factor we can subsample by and still be at least minWidth x minHeight.
+   */
+  private static int subsampling(int width, int height, int minWidth, int minHeight) {
+    return Math.max(1, Math.min(width / Math.max(1, minWidth), height / Math.max(1, minHeight)));
+  }
+
+  private static ImageReadParam readParam(ImageReader reader, Rectangle region, int subsampling) {
+    ImageReadParam ret = reader.getDefaultReadParam();
+    if (region != null) {
+      ret.setSourceRegion(region);
+    }
+    ret.setSourceSubsampling(subsampling, subsampling, 0, 0);
+    return ret;
+  }
+
+  /**
+   * Returns null if ImageIO doesn't have a reader for the file, so the caller can fall back to decoding it in full.
+   */
+  private static BufferedImage withReader(File file, ReaderFunction function) {
+    try (ImageInputStream input = ImageIO.createImageInputStream(file.file)) {
+      if (input == null) {
+        return null;
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        return function.apply(reader);
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+  }
+
+  private static interface ReaderFunction {
+    BufferedImage apply(ImageReader reader) throws IOException;
   }
 
   public static BufferedImage resize(BufferedImage bi, int w, int h) {
@@ -69,14 +188,18 @@ public class Images {
   }
 
   public static boolean isTransparent(BufferedImage bi, int x, int y, int w, int h) {
-    int[] data = bi.getRGB(x, y, w, h, null, 0, w);
-    for (int rgb : data) {
-      int alpha = (rgb >> 24) & 0xff;
-      if (alpha != 0) {
-        return false;
-      }
+    if (!bi.getColorModel().hasAlpha()) {
+      return w <= 0 || h <= 0;
     }
-    return true;
+    // stops at the first row that has a visible pixel
+    return forEachRow(bi, x, y, w, h, false, (argb, from, to) -> {
+      for (int i = from; i < to; i++) {
+        if ((argb[i] >>> 24) != 0) {
+          return false;
+        }
+      }
+      return true;
+    });
   }
 
   public static void changeAlpha(BufferedImage bi, int rgb, int alpha) {
@@ -90,27 +213,228 @@ public class Images {
 
   public static void switchRGB(BufferedImage bi, int rgbFrom, int rgbTo) {
     Stopwatch watch = Stopwatch.createStarted();
-    int[] data = bi.getRGB(0, 0, bi.getWidth(), bi.getHeight(), null, 0, bi.getWidth());
-    int switched = 0;
-    for (int i = 0; i < data.length; i++) {
-      if (data[i] == rgbFrom) {
-        data[i] = rgbTo;
-        switched++;
+    LongAdder switched = new LongAdder();
+    forEachRow(bi, 0, 0, bi.getWidth(), bi.getHeight(), true, (argb, from, to) -> {
+      int count = 0;
+      for (int i = from; i < to; i++) {
+        if (argb[i] == rgbFrom) {
+          argb[i] = rgbTo;
+          count++;
+        }
       }
-    }
-    bi.setRGB(0, 0, bi.getWidth(), bi.getHeight(), data, 0, bi.getWidth());
+      switched.add(count);
+      return true;
+    });
     Log.debug("Switched " + switched + " pixels in " + watch);
   }
 
   public static void setOpacity(BufferedImage bi, double opacity) {
-    int[] data = bi.getRGB(0, 0, bi.getWidth(), bi.getHeight(), null, 0, bi.getWidth());
-    for (int i = 0; i < data.length; i++) {
-      int rgb = data[i];
-      int alpha = (rgb >> 24) & 0xff;
-      alpha = (int) (alpha * opacity);
-      data[i] = (rgb & 0x00ffffff) | (alpha << 24);
-    }
-    bi.setRGB(0, 0, bi.getWidth(), bi.getHeight(), data, 0, bi.getWidth());
+    forEachRow(bi, 0, 0, bi.getWidth(), bi.getHeight(), true, (argb, from, to) -> {
+      for (int i = from; i < to; i++) {
+        int rgb = argb[i];
+        int alpha = (int) (((rgb >> 24) & 0xff) * opacity);
+        argb[i] = (rgb & 0x00ffffff) | (alpha << 24);
+      }
+      return true;
+    });
+  }
+
+  /**
+   * Calls back with each row of the region as ARGB ints (like getRGB() returns), on multiple threads. If write is true,
+   * the rows are stored back into the image afterwards.
+   *
+   * INT_ARGB images are handed their own pixel array, and INT_RGB, 3BYTE_BGR and 4BYTE_ABGR images are converted a row
+   * at a time. Any other kind of image goes through getRGB()/setRGB() on one thread, since color models aren't
+   * guaranteed to be thread-safe.
+   *
+   * Returns false if the callback returned false (to stop early) for any row.
+   */
+  private static boolean forEachRow(BufferedImage bi, int x, int y, int w, int h, boolean write, RowOperation op) {
+    checkArgument(x >= 0 && y >= 0 && x + w <= bi.getWidth() && y + h <= bi.getHeight(), "Out of bounds");
+    if (w <= 0 || h <= 0) {
+      return true;
+    }
+    AtomicBoolean stopped = new AtomicBoolean();
+    WritableRaster raster = bi.getRaster();
+    int type = bi.getType();
+
+    if (type == BufferedImage.TYPE_INT_ARGB) {
+      int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+      int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+      int start = pixelOffset(raster, x, y, 0);
+      RowTiles.run(h, w, (fromRow, toRow) -> {
+        for (int row = fromRow; row < toRow && !stopped.get(); row++) {
+          int from = start + row * stride;
+          if (!op.apply(data, from, from + w)) {
+            stopped.set(true);
+          }
+        }
+      });
+      return !stopped.get();
+    }
+
+    RowCodec codec = RowCodec.of(bi, x, y, w);
+    TileConsumer tile = (fromRow, toRow) -> {
+      int[] argb = new int[w];
+      for (int row = fromRow; row < toRow && !stopped.get(); row++) {
+        codec.read(y + row, argb);
+        boolean keepGoing = op.apply(argb, 0, w);
+        if (write) {
+          codec.write(y + row, argb);
+        }
+        if (!keepGoing) {
+          stopped.set(true);
+        }
+      }
+    };
+    if (codec instanceof RowCodec.Generic) {
+      tile.accept(0, h);
+    } else {
+      RowTiles.run(h, w, tile);
+    }
+    return !stopped.get();
+  }
+
+  /**
+   * The index in the raster's data array of pixel (x, y)'s band.
+   */
+  private static int pixelOffset(WritableRaster raster, int x, int y, int band) {
+    int dx = x - raster.getSampleModelTranslateX(), dy = y - raster.getSampleModelTranslateY();
+    SampleModel sm = raster.getSampleModel();
+    int offset = sm instanceof ComponentSampleModel ? ((ComponentSampleModel) sm).getOffset(dx, dy, band)
+        : ((SinglePixelPackedSampleModel) sm).getOffset(dx, dy);
+    return raster.getDataBuffer().getOffset() + offset;
+  }
+
+  private static interface RowOperation {
+    /**
+     * Returns false to stop early.
+     */
+    boolean apply(int[] argb, int from, int to);
+  }
+
+  /**
+   * Converts one row of an image to and from ARGB ints.
+   */
+  private static abstract class RowCodec {
+    protected final int x, w;
+
+    private RowCodec(int x, int w) {
+      this.x = x;
+      this.w = w;
+    }
+
+    abstract void read(int y, int[] argb);
+
+    abstract void write(int y, int[] argb);
+
+    static RowCodec of(BufferedImage bi, int x, int y, int w) {
+      int type = bi.getType();
+      if (type == BufferedImage.TYPE_INT_RGB) {
+        return new IntRGB(bi.getRaster(), x, w);
+      } else if (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR) {
+        return new Bytes(bi.getRaster(), x, w);
+      } else {
+        return new Generic(bi, x, w);
+      }
+    }
+
+    private static class IntRGB extends RowCodec {
+      private final WritableRaster raster;
+      private final int[] data;
+
+      private IntRGB(WritableRaster raster, int x, int w) {
+        super(x, w);
+        this.raster = raster;
+        this.data = ((DataBufferInt) raster.getDataBuffer()).getData();
+      }
+
+      @Override
+      void read(int y, int[] argb) {
+        int offset = pixelOffset(raster, x, y, 0);
+        for (int i = 0; i < w; i++) {
+          argb[i] = data[offset + i] | 0xff000000;
+        }
+      }
+
+      @Override
+      void write(int y, int[] argb) {
+        int offset = pixelOffset(raster, x, y, 0);
+        for (int i = 0; i < w; i++) {
+          data[offset + i] = argb[i] & 0x00ffffff;
+        }
+      }
+    }
+
+    /**
+     * 8 bits per band, interleaved, with the bands in R, G, B (, A) order.
+     */
+    private static class Bytes extends RowCodec {
+      private final WritableRaster raster;
+      private final byte[] data;
+      private final int pixelStride;
+      private final boolean hasAlpha;
+
+      private Bytes(WritableRaster raster, int x, int w) {
+        super(x, w);
+        this.raster = raster;
+        this.data = ((DataBufferByte) raster.getDataBuffer()).getData();
+        this.pixelStride = ((ComponentSampleModel) raster.getSampleModel()).getPixelStride();
+        this.hasAlpha = raster.getNumBands() == 4;
+      }
+
+      @Override
+      void read(int y, int[] argb) {
+        int r = pixelOffset(raster, x, y, 0), g = pixelOffset(raster, x, y, 1), b = pixelOffset(raster, x, y, 2);
+        int a = hasAlpha ? pixelOffset(raster, x, y, 3) : -1;
+        for (int i = 0; i < w; i++) {
+          int alpha = hasAlpha ? data[a] & 0xff : 0xff;
+          argb[i] = alpha << 24 | (data[r] & 0xff) << 16 | (data[g] & 0xff) << 8 | (data[b] & 0xff);
+          r += pixelStride;
+          g += pixelStride;
+          b += pixelStride;
+          a += pixelStride;
+        }
+      }
+
+      @Override
+      void write(int y, int[] argb) {
+        int r = pixelOffset(raster, x, y, 0), g = pixelOffset(raster, x, y, 1), b = pixelOffset(raster, x, y, 2);
+        int a = hasAlpha ? pixelOffset(raster, x, y, 3) : -1;
+        for (int i = 0; i < w; i++) {
+          int pixel = argb[i];
+          data[r] = (byte) (pixel >> 16);
+          data[g] = (byte) (pixel >> 8);
+          data[b] = (byte) pixel;
+          if (hasAlpha) {
+            data[a] = (byte) (pixel >>> 24);
+          }
+          r += pixelStride;
+          g += pixelStride;
+          b += pixelStride;
+          a += pixelStride;
+        }
+      }
+    }
+
+    private static class Generic extends RowCodec {
+      private final BufferedImage bi;
+
+      private Generic(BufferedImage bi, int x, int w) {
+        super(x, w);
+        this.bi = bi;
+      }
+
+      @Override
+      void read(int y, int[] argb) {
+        bi.getRGB(x, y, w, 1, argb, 0, w);
+      }
+
+      @Override
+      void write(int y, int[] argb) {
+        bi.setRGB(x, y, w, 1, argb, 0, w);
+      }
+    }
   }
 
   public static BufferedImage rotate(BufferedImage img, double angle) {
@@ -0,0 +1,303 @@
+package ox.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+import ox.File;
+import ox.x.XList;
+
+/**
+ * Finds every occurrence of a set of literal keywords in a single pass over the text (Aho-Corasick), instead of
+ * running one Regex per keyword.
+ *
+ * Keywords are identified by their index in the list they were created from. Overlapping matches are all reported.
+ *
+ * example: KeywordMatcher.ignoringCase(XList.of("cafe", "tea")).matches("Café au lait") -> [0 at 0-4]
+ */
+public class KeywordMatcher {
+
+  private final XList<String> keywords;
+  private final boolean ignoreCase;
+  private final int[] lengths;
+
+  /**
+   * Maps each char to a column of the transition table. 0 is every char that doesn't appear in a keyword.
+   */
+  private final char[] symbols = new char[Character.MAX_VALUE + 1];
+  private final int[] byteSymbols = new int[256];
+  private final int numSymbols;
+
+  /**
+   * transitions[state * numSymbols + symbol] is the next state. Failure links are already folded in, so matching
+   * never backtracks.
+   */
+  private final int[] transitions;
+  private final int[][] outputs;
+
+  /**
+   * True when records can be matched as raw bytes without decoding, i.e. every keyword is ASCII.
+   */
+  private final boolean asciiKeywords;
+
+  private KeywordMatcher(XList<String> keywords, boolean ignoreCase) {
+    this.keywords = keywords;
+    this.ignoreCase = ignoreCase;
+
+    char[][] folded = new char[keywords.size()][];
+    int totalLength = 0;
+    int symbolCount = 1;
+    boolean ascii = true;
+    for (int i = 0; i < folded.length; i++) {
+      String keyword = keywords.get(i);
+      checkArgument(keyword != null && !keyword.isEmpty(), "Keywords can't be empty.");
+      char[] chars = (ignoreCase ? Utils.normalize(keyword) : keyword).toCharArray();
+      for (int j = 0; j < chars.length; j++) {
+        char c = ignoreCase ? fold(chars[j]) : chars[j];
+        chars[j] = c;
+        if (symbols[c] == 0) {
+          symbols[c] = (char) symbolCount++;
+        }
+        ascii &= c < 0x80;
+      }
+      folded[i] = chars;
+      totalLength += chars.length;
+    }
+    this.numSymbols = symbolCount;
+    this.asciiKeywords = ascii;
+    for (int b = 0; b < 0x80; b++) {
+      // bytes 0x80 and above are never a whole character in UTF-8, so they stay at 0
+      byteSymbols[b] = symbols[ignoreCase ? fold((char) b) : b];
+    }
+
+    // build the trie, with -1 for missing edges
+    int[] table = new int[(totalLength + 1) * numSymbols];
+    Arrays.fill(table, -1);
+    int[][] out = new int[totalLength + 1][];
+    int numStates = 1;
+    this.lengths = new int[folded.length];
+    for (int i = 0; i < folded.length; i++) {
+      int state = 0;
+      for (char c : folded[i]) {
+        int index = state * numSymbols + symbols[c];
+        if (table[index] == -1) {
+          table[index] = numStates++;
+        }
+        state = table[index];
+      }
+      out[state] = append(out[state], i);
+      lengths[i] = folded[i].length;
+    }
+
+    // breadth first, so that a state's failure state is always complete before the state itself
+    int[] fail = new int[numStates];
+    int[] queue = new int[numStates];
+    int head = 0, tail = 0;
+    for (int symbol = 0; symbol < numSymbols; symbol++) {
+      int next = table[symbol];
+      if (next == -1) {
+        table[symbol] = 0;
+      } else {
+        fail[next] = 0;
+        queue[tail++] = next;
+      }
+    }
+    while (head < tail) {
+      int state = queue[head++];
+      int failState = fail[state];
+      if (out[failState] != null) {
+        out[state] = concat(out[state], out[failState]);
+      }
+      for (int symbol = 0; symbol < numSymbols; symbol++) {
+        int index = state * numSymbols + symbol;
+        int next = table[index];
+        if (next == -1) {
+          table[index] = table[failState * numSymbols + symbol];
+        } else {
+          fail[next] = table[failState * numSymbols + symbol];
+          queue[tail++] = next;
+        }
+      }
+    }
+
+    this.transitions = Arrays.copyOf(table, numStates * numSymbols);
+    this.outputs = Arrays.copyOf(out, numStates);
+  }
+
+  public String getKeyword(int id) {
+    return keywords.get(id);
+  }
+
+  public int size() {
+    return keywords.size();
+  }
+
+  /**
+   * Calls back with (keyword id, start, end) for every match, in order of end position. Allocates nothing.
+   */
+  public void run(CharSequence text, MatchConsumer callback) {
+    int state = 0;
+    for (int i = 0, n = text.length(); i < n; i++) {
+      char c = text.charAt(i);
+      state = transitions[state * numSymbols + symbols[ignoreCase ? fold(c) : c]];
+      int[] found = outputs[state];
+      if (found != null) {
+        for (int id : found) {
+          callback.accept(id, i + 1 - lengths[id], i + 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Matches a record from MappedScanner (or any buffer of UTF-8) from its position to its limit, calling back with the
+   * id of each keyword found. When all the keywords are ASCII the bytes are matched directly, without decoding.
+   */
+  public void run(ByteBuffer record, IntConsumer callback) {
+    if (!canMatchBytes(record)) {
+      run(MappedScanner.toString(record), (id, start, end) -> callback.accept(id));
+      return;
+    }
+    int state = 0;
+    for (int i = record.position(), n = record.limit(); i < n; i++) {
+      state = transitions[state * numSymbols + byteSymbols[record.get(i) & 0xFF]];
+      int[] found = outputs[state];
+      if (found != null) {
+        for (int id : found) {
+          callback.accept(id);
+        }
+      }
+    }
+  }
+
+  public XList<Match> matches(CharSequence text) {
+    XList<Match> ret = XList.create();
+    run(text, (id, start, end) -> ret.add(new Match(id, start, end)));
+    return ret;
+  }
+
+  public boolean containsAny(CharSequence text) {
+    int state = 0;
+    for (int i = 0, n = text.length(); i < n; i++) {
+      char c = text.charAt(i);
+      state = transitions[state * numSymbols + symbols[ignoreCase ? fold(c) : c]];
+      if (outputs[state] != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counts the occurrences of each keyword in the file, scanning it through a memory map on multiple threads. Keywords
+   * that span lines are not found.
+   */
+  public long[] countAll(File file, int numThreads) {
+    AtomicLongArray counts = new AtomicLongArray(keywords.size());
+    file.scan().forEachParallel(numThreads, record -> run(record, counts::incrementAndGet));
+    long[] ret = new long[counts.length()];
+    for (int i = 0; i < ret.length; i++) {
+      ret[i] = counts.get(i);
+    }
+    return ret;
+  }
+
+  private boolean canMatchBytes(ByteBuffer record) {
+    if (!asciiKeywords) {
+      return false;
+    }
+    if (!ignoreCase) {
+      return true;
+    }
+    // non-ASCII text could fold to an ASCII keyword (e.g. é -> e), which needs decoding
+    for (int i = record.position(), n = record.limit(); i < n; i++) {
+      if (record.get(i) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static KeywordMatcher of(Iterable<String> keywords) {
+    return new KeywordMatcher(XList.create(keywords), false);
+  }
+
+  /**
+   * Matches regardless of case and diacritical marks. Keywords are normalized with Utils.normalize() first.
+   */
+  public static KeywordMatcher ignoringCase(Iterable<String> keywords) {
+    return new KeywordMatcher(XList.create(keywords), true);
+  }
+
+  private static char fold(char c) {
+    if (c < Folding.TABLE.length) {
+      return Folding.TABLE[c];
+    }
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  private static int[] append(int[] array, int value) {
+    if (array == null) {
+      return new int[] { value };
+    }
+    int[] ret = Arrays.copyOf(array, array.length + 1);
+    ret[array.length] = value;
+    return ret;
+  }
+
+  private static int[] concat(int[] a, int[] b) {
+    if (a == null) {
+      return b;
+    }
+    int[] ret = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, ret, a.length, b.length);
+    return ret;
+  }
+
+  /**
+   * Folding is one char to one char, so that match offsets line up with the original text.
+   */
+  private static class Folding {
+    // covers the Latin, Greek and Cyrillic blocks, where most accented characters live
+    private static final char[] TABLE = new char[0x2000];
+
+    static {
+      for (int c = 0; c < TABLE.length; c++) {
+        char folded = (char) c;
+        String s = String.valueOf(folded);
+        if (!Normalizer.isNormalized(s, Normalizer.Form.NFD)) {
+          String stripped = Utils.removeDiacriticalMarks(s);
+          if (stripped.length() == 1) {
+            folded = stripped.charAt(0);
+          }
+        }
+        TABLE[c] = Character.toLowerCase(Character.toUpperCase(folded));
+      }
+    }
+  }
+
+  public static interface MatchConsumer {
+    public void accept(int keyword, int start, int end);
+  }
+
+  public static class Match {
+    public final int keyword;
+    public final int start, end;
+
+    public Match(int keyword, int start, int end) {
+      this.keyword = keyword;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public String toString() {
+      return keyword + " at " + start + "-" + end;
+    }
+  }
+
+}
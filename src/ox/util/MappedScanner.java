@@ -0,0 +1,196 @@
+package ox.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static ox.util.Utils.propagate;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import ox.File;
+import ox.Threads;
+import ox.x.XList;
+
+/**
+ * Splits a file into records (lines by default) by memory mapping it one window at a time, so files of any size can be
+ * scanned without copying them onto the heap.
+ *
+ * Each record is passed to the callback as a ByteBuffer positioned on the record's bytes (without the delimiter). The
+ * buffer is a view onto the mapped file and is reused, so it is only valid until the callback returns.
+ */
+public class MappedScanner {
+
+  public static final long DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE / 2;
+
+  private static final int BOUNDARY_SEARCH_SIZE = 64 * 1024;
+
+  private static final ThreadLocal<byte[]> decodeBuffers = ThreadLocal.withInitial(() -> new byte[256]);
+
+  private final File file;
+  private byte delimiter = '\n';
+  private boolean stripCarriageReturns = true;
+  private long windowSize = DEFAULT_WINDOW_SIZE;
+
+  public MappedScanner(File file) {
+    this.file = file;
+  }
+
+  public MappedScanner delimiter(byte delimiter) {
+    this.delimiter = delimiter;
+    this.stripCarriageReturns = delimiter == '\n';
+    return this;
+  }
+
+  public MappedScanner windowSize(long windowSize) {
+    checkArgument(windowSize > 0 && windowSize <= MAX_WINDOW_SIZE, "windowSize=" + windowSize);
+    this.windowSize = windowSize;
+    return this;
+  }
+
+  public void forEach(Consumer<ByteBuffer> callback) {
+    try (FileChannel channel = FileChannel.open(file.file.toPath(), StandardOpenOption.READ)) {
+      for (long[] window : getWindows(channel)) {
+        scan(channel, window[0], window[1], callback);
+      }
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+  }
+
+  /**
+   * Scans the windows of the file on multiple threads. Records within a window are delivered in order, but windows are
+   * processed concurrently, so the callback must be thread-safe.
+   */
+  public void forEachParallel(int numThreads, Consumer<ByteBuffer> callback) {
+    try (FileChannel channel = FileChannel.open(file.file.toPath(), StandardOpenOption.READ)) {
+      XList<long[]> windows = getWindows(channel);
+      if (windows.size() <= 1 || numThreads <= 1) {
+        windows.forEach(window -> scan(channel, window[0], window[1], callback));
+      } else {
+        Threads.get(numThreads).input(windows).run(window -> scan(channel, window[0], window[1], callback));
+      }
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+  }
+
+  /**
+   * Decodes each record as UTF-8. Convenient, but allocates a String per record.
+   */
+  public void forEachLine(Consumer<String> callback) {
+    forEach(record -> callback.accept(toString(record)));
+  }
+
+  public static String toString(ByteBuffer record) {
+    int length = record.remaining();
+    byte[] buffer = decodeBuffers.get();
+    if (buffer.length < length) {
+      buffer = new byte[Math.max(length, buffer.length * 2)];
+      decodeBuffers.set(buffer);
+    }
+    record.duplicate().get(buffer, 0, length);
+    return new String(buffer, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Splits the file into windows of roughly windowSize bytes, each of which ends just after a delimiter (or at the end
+   * of the file).
+   */
+  private XList<long[]> getWindows(FileChannel channel) throws IOException {
+    long size = channel.size();
+    XList<long[]> ret = XList.create();
+    ByteBuffer search = ByteBuffer.allocate(BOUNDARY_SEARCH_SIZE);
+    long start = 0;
+    while (start < size) {
+      long end = start + windowSize;
+      if (end >= size) {
+        end = size;
+      } else {
+        end = findBoundary(channel, end, size, search);
+      }
+      checkState(end - start <= Integer.MAX_VALUE, "Found a record larger than 2GB in " + file);
+      ret.add(new long[] { start, end });
+      start = end;
+    }
+    return ret;
+  }
+
+  private long findBoundary(FileChannel channel, long from, long size, ByteBuffer search) throws IOException {
+    long position = from;
+    while (position < size) {
+      // cast so that the Java 8 Buffer methods are called, not the ByteBuffer overrides added in Java 9
+      ((Buffer) search).clear();
+      int n = channel.read(search, position);
+      if (n <= 0) {
+        break;
+      }
+      byte[] bytes = search.array();
+      for (int i = 0; i < n; i++) {
+        if (bytes[i] == delimiter) {
+          return position + i + 1;
+        }
+      }
+      position += n;
+    }
+    return size;
+  }
+
+  private void scan(FileChannel channel, long start, long end, Consumer<ByteBuffer> callback) {
+    MappedByteBuffer window;
+    try {
+      window = channel.map(MapMode.READ_ONLY, start, end - start);
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+    window.order(ByteOrder.LITTLE_ENDIAN);
+
+    ByteBuffer view = window.duplicate();
+    int limit = window.limit();
+    int recordStart = 0;
+    while (recordStart < limit) {
+      int i = indexOf(window, recordStart, limit);
+      int recordEnd = i == -1 ? limit : i;
+      if (i != -1 || recordEnd > recordStart) {
+        int contentEnd = recordEnd;
+        if (stripCarriageReturns && contentEnd > recordStart && window.get(contentEnd - 1) == '\r') {
+          contentEnd--;
+        }
+        ((Buffer) view).limit(contentEnd).position(recordStart);
+        callback.accept(view);
+      }
+      recordStart = recordEnd + 1;
+    }
+  }
+
+  /**
+   * Finds the next delimiter, checking 8 bytes at a time.
+   */
+  private int indexOf(ByteBuffer buffer, int from, int to) {
+    final long pattern = (delimiter & 0xFFL) * 0x0101010101010101L;
+    int i = from;
+    for (; i + 8 <= to; i += 8) {
+      long word = buffer.getLong(i) ^ pattern;
+      long found = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+      if (found != 0) {
+        return i + (Long.numberOfTrailingZeros(found) >>> 3);
+      }
+    }
+    for (; i < to; i++) {
+      if (buffer.get(i) == delimiter) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+}
@@ -0,0 +1,229 @@
+package ox.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static ox.util.Utils.propagate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import ox.NamedThreadFactory;
+
+/**
+ * A pigz-style gzip writer. Input is split into fixed size blocks which are compressed on multiple threads, each into a
+ * complete gzip member. The members are written out in order, and the concatenation is a valid gzip stream (readable by
+ * GZIPInputStream, gunzip, etc).
+ *
+ * At most numThreads blocks are compressed at once, and at most 2 blocks per thread are held in memory.
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+  private static final int NUM_CORES = Runtime.getRuntime().availableProcessors();
+
+  private static final ExecutorService executor = Executors.newFixedThreadPool(NUM_CORES,
+      new NamedThreadFactory(ParallelGZIPOutputStream.class).daemon());
+
+  private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+  private static final ThreadLocal<Deflater> deflaters = ThreadLocal
+      .withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+  private final OutputStream out;
+  private final int level;
+  private final int blockSize;
+  private final int numThreads;
+  private final int maxPending;
+  private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+  private byte[] block;
+  private int count = 0;
+  private boolean wroteMember = false;
+  private boolean closed = false;
+
+  public ParallelGZIPOutputStream(OutputStream out) {
+    this(out, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * @param level 1 (fastest) to 9 (smallest), or Deflater.DEFAULT_COMPRESSION
+   */
+  public ParallelGZIPOutputStream(OutputStream out, int level) {
+    this(out, level, DEFAULT_BLOCK_SIZE, NUM_CORES);
+  }
+
+  public ParallelGZIPOutputStream(OutputStream out, int level, int blockSize, int numThreads) {
+    checkArgument(level == Deflater.DEFAULT_COMPRESSION || (level >= 0 && level <= 9), "level=" + level);
+    checkArgument(blockSize > 0, "blockSize=" + blockSize);
+    checkArgument(numThreads > 0, "numThreads=" + numThreads);
+    this.out = out;
+    this.level = level;
+    this.blockSize = blockSize;
+    this.numThreads = Math.min(numThreads, NUM_CORES);
+    this.maxPending = numThreads * 2;
+    this.block = new byte[blockSize];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (count == block.length) {
+      submitBlock();
+    }
+    block[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (count == block.length) {
+        submitBlock();
+      }
+      int n = Math.min(len, block.length - count);
+      System.arraycopy(b, off, block, count, n);
+      count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Writes out the blocks that have finished compressing. The current block keeps filling up, so data written since the
+   * last full block may not be decompressable yet (see syncFlush()).
+   */
+  @Override
+  public void flush() throws IOException {
+    while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+      writeNext();
+    }
+    out.flush();
+  }
+
+  /**
+   * Ends the current gzip member early so that everything written so far can be decompressed. Each call costs a gzip
+   * header and a worse compression ratio, so only call this when a reader needs to see the data now.
+   */
+  public void syncFlush() throws IOException {
+    if (count > 0) {
+      submitBlock();
+    }
+    while (!pending.isEmpty()) {
+      writeNext();
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (pending.isEmpty()) {
+        // small outputs are compressed inline rather than paying for a thread handoff
+        if (count > 0 || !wroteMember) {
+          out.write(compress(block, count, level));
+        }
+      } else {
+        if (count > 0) {
+          submitBlock();
+        }
+        while (!pending.isEmpty()) {
+          writeNext();
+        }
+      }
+      block = null;
+    } finally {
+      out.close();
+    }
+  }
+
+  private void submitBlock() throws IOException {
+    awaitFreeThread();
+    final byte[] data = block;
+    final int length = count;
+    pending.add(executor.submit(() -> compress(data, length, level)));
+    block = new byte[blockSize];
+    count = 0;
+    while (pending.size() > maxPending) {
+      writeNext();
+    }
+  }
+
+  /**
+   * Waits until fewer than numThreads of our blocks are queued or being compressed.
+   */
+  private void awaitFreeThread() {
+    while (true) {
+      Future<byte[]> oldest = null;
+      int running = 0;
+      for (Future<byte[]> future : pending) {
+        if (!future.isDone()) {
+          oldest = oldest == null ? future : oldest;
+          running++;
+        }
+      }
+      if (running < numThreads) {
+        return;
+      }
+      try {
+        oldest.get();
+      } catch (ExecutionException e) {
+        // writeNext() throws it
+      } catch (InterruptedException e) {
+        throw propagate(e);
+      }
+    }
+  }
+
+  private void writeNext() throws IOException {
+    Future<byte[]> future = pending.removeFirst();
+    try {
+      out.write(future.get());
+      wroteMember = true;
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      throw propagate(e);
+    }
+  }
+
+  private static byte[] compress(byte[] data, int length, int level) {
+    Deflater deflater = deflaters.get();
+    deflater.reset();
+    deflater.setLevel(level);
+    deflater.setInput(data, 0, length);
+    deflater.finish();
+
+    ByteArrayOutputStream ret = new ByteArrayOutputStream(length / 2 + 64);
+    ret.write(HEADER, 0, HEADER.length);
+    byte[] buffer = new byte[64 * 1024];
+    while (!deflater.finished()) {
+      int n = deflater.deflate(buffer);
+      ret.write(buffer, 0, n);
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, length);
+    writeIntLE(ret, (int) crc.getValue());
+    writeIntLE(ret, length);
+    return ret.toByteArray();
+  }
+
+  private static void writeIntLE(ByteArrayOutputStream out, int i) {
+    out.write(i & 0xff);
+    out.write((i >> 8) & 0xff);
+    out.write((i >> 16) & 0xff);
+    out.write((i >> 24) & 0xff);
+  }
+
+}
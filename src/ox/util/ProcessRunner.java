@@ -0,0 +1,389 @@
+package ox.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static ox.util.Utils.propagate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import ox.File;
+import ox.Log;
+import ox.NamedThreadFactory;
+import ox.OS;
+import ox.OS.OS_Type;
+import ox.Threads;
+import ox.x.XList;
+
+/**
+ * Runs a command, reading its stdout and stderr concurrently on their own threads so that a process which writes a lot
+ * to either stream never blocks on a full pipe.
+ *
+ * Each line is passed to the callbacks as it arrives, and the last lines of each stream are kept in the Result.
+ *
+ * example: ProcessRunner.shell("make").onStdout(Log::info).timeout(Duration.ofMinutes(5)).run()
+ */
+public class ProcessRunner {
+
+  /**
+   * How long a killed process gets to exit, and how long we then wait for the rest of its output (which never comes if
+   * a child process is still holding the pipe open).
+   */
+  private static final long KILL_GRACE_MILLIS = 1000;
+
+  /**
+   * How long we wait for a pump to stop after closing its stream out from under it.
+   */
+  private static final long CLOSE_WAIT_MILLIS = 100;
+
+  private static final ExecutorService pumps = Executors.newCachedThreadPool(
+      new NamedThreadFactory(ProcessRunner.class, "pump").daemon());
+
+  private final XList<String> command;
+  private File workingDir;
+  private Consumer<String> stdoutCallback = line -> {
+  };
+  private Consumer<String> stderrCallback = line -> {
+  };
+  private OutputStream stdoutStream;
+  private int keepLines = 1000;
+  private Duration timeout;
+  private boolean checkExitCode = true;
+
+  public ProcessRunner(List<String> command) {
+    checkArgument(!command.isEmpty(), "No command given.");
+    this.command = XList.create(command);
+  }
+
+  public ProcessRunner(String... command) {
+    this(XList.of(command));
+  }
+
+  /**
+   * Runs the command with /bin/sh (or cmd.exe on Windows).
+   */
+  public static ProcessRunner shell(String command) {
+    if (OS.type == OS_Type.WINDOWS) {
+      return new ProcessRunner("cmd.exe", "/c", command);
+    }
+    return new ProcessRunner("/bin/sh", "-c", command);
+  }
+
+  public ProcessRunner workingDir(File workingDir) {
+    this.workingDir = workingDir;
+    return this;
+  }
+
+  /**
+   * Called (from a background thread) with each line of stdout as it's read.
+   */
+  public ProcessRunner onStdout(Consumer<String> callback) {
+    this.stdoutCallback = checkNotNull(callback);
+    return this;
+  }
+
+  /**
+   * Called (from a background thread) with each line of stderr as it's read.
+   */
+  public ProcessRunner onStderr(Consumer<String> callback) {
+    this.stderrCallback = checkNotNull(callback);
+    return this;
+  }
+
+  /**
+   * Copies stdout to the stream byte for byte, instead of splitting it into lines. The stream is not closed.
+   */
+  public ProcessRunner stdoutTo(OutputStream out) {
+    this.stdoutStream = checkNotNull(out);
+    return this;
+  }
+
+  /**
+   * How many of the last lines of each stream to keep in the Result. Defaults to 1000.
+   */
+  public ProcessRunner keepLines(int keepLines) {
+    checkArgument(keepLines >= 0, "keepLines=" + keepLines);
+    this.keepLines = keepLines;
+    return this;
+  }
+
+  /**
+   * Kills the process if it runs for longer than this.
+   */
+  public ProcessRunner timeout(Duration timeout) {
+    this.timeout = timeout;
+    return this;
+  }
+
+  /**
+   * By default, run() throws if the process exits with a non-zero code, times out, or is cancelled.
+   */
+  public ProcessRunner ignoreExitCode() {
+    this.checkExitCode = false;
+    return this;
+  }
+
+  /**
+   * Runs the command and waits for it to finish.
+   */
+  public Result run() {
+    return start().await();
+  }
+
+  /**
+   * Starts the command without waiting for it.
+   */
+  public Execution start() {
+    return new Execution();
+  }
+
+  /**
+   * Runs the commands with at most maxConcurrent running at a time, and returns their results in the same order.
+   */
+  public static XList<Result> runAll(List<ProcessRunner> runners, int maxConcurrent) {
+    checkArgument(maxConcurrent > 0, "maxConcurrent=" + maxConcurrent);
+    Result[] ret = new Result[runners.size()];
+    if (!runners.isEmpty()) {
+      XList<Integer> indices = XList.create();
+      for (int i = 0; i < runners.size(); i++) {
+        indices.add(i);
+      }
+      Threads.get(Math.min(maxConcurrent, runners.size())).input(indices).run(i -> ret[i] = runners.get(i).run());
+    }
+    return XList.of(ret);
+  }
+
+  public class Execution {
+    private final Process process;
+    private final long startTime = System.nanoTime();
+    private final ArrayDeque<String> stdoutLines = new ArrayDeque<>(), stderrLines = new ArrayDeque<>();
+    private final Future<?> stdout, stderr;
+    private volatile boolean cancelled = false;
+
+    private Execution() {
+      try {
+        ProcessBuilder pb = new ProcessBuilder().command(command);
+        if (workingDir != null) {
+          pb.directory(workingDir.file);
+        }
+        process = pb.start();
+        process.getOutputStream().close();
+      } catch (IOException e) {
+        throw propagate(e);
+      }
+      if (stdoutStream == null) {
+        stdout = pumps.submit(() -> pumpLines(process.getInputStream(), stdoutCallback, stdoutLines));
+      } else {
+        stdout = pumps.submit(() -> pumpBytes(process.getInputStream(), stdoutStream));
+      }
+      stderr = pumps.submit(() -> pumpLines(process.getErrorStream(), stderrCallback, stderrLines));
+    }
+
+    /**
+     * Kills the process, forcibly if it's still alive after KILL_GRACE_MILLIS. await() then returns (or throws) as soon
+     * as it's dead.
+     */
+    public void cancel() {
+      cancelled = true;
+      process.destroy();
+      pumps.execute(() -> {
+        try {
+          if (!process.waitFor(KILL_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly();
+          }
+        } catch (InterruptedException e) {
+          process.destroyForcibly();
+        }
+      });
+    }
+
+    public boolean isAlive() {
+      return process.isAlive();
+    }
+
+    public Result await() {
+      boolean timedOut = false;
+      try {
+        if (timeout == null) {
+          process.waitFor();
+        } else if (!process.waitFor(timeout.toNanos() - (System.nanoTime() - startTime), TimeUnit.NANOSECONDS)) {
+          timedOut = true;
+          process.destroy();
+        }
+        if (!process.waitFor(KILL_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+          process.destroyForcibly().waitFor();
+        }
+
+        // the streams hit EOF once the process exits, unless a child process inherited them
+        long deadline = Long.MAX_VALUE;
+        if (timedOut || cancelled) {
+          deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(KILL_GRACE_MILLIS);
+        } else if (timeout != null) {
+          deadline = startTime + timeout.toNanos() + TimeUnit.MILLISECONDS.toNanos(KILL_GRACE_MILLIS);
+        }
+        finish(stdout, deadline);
+        finish(stderr, deadline);
+
+        Result ret = new Result(command, process.exitValue(), timedOut, cancelled, snapshot(stdoutLines),
+            snapshot(stderrLines), Duration.ofNanos(System.nanoTime() - startTime));
+        if (checkExitCode) {
+          ret.check();
+        }
+        return ret;
+      } catch (InterruptedException e) {
+        cancel();
+        throw propagate(e);
+      }
+    }
+
+    /**
+     * Waits for the pump to read to the end of its stream, or gives up on it at the deadline.
+     */
+    private void finish(Future<?> pump, long deadline) throws InterruptedException {
+      try {
+        if (deadline == Long.MAX_VALUE) {
+          pump.get();
+        } else {
+          pump.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+      } catch (TimeoutException e) {
+        // a child process is still holding the pipe open. Closing our end makes the pump's next read fail, so that it
+        // doesn't keep writing to the caller's stream after we return.
+        closeStreams();
+        try {
+          pump.get(CLOSE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (Exception ignored) {
+          pump.cancel(true);
+        }
+      } catch (ExecutionException e) {
+        throw propagate(e.getCause());
+      }
+    }
+
+    private void closeStreams() {
+      for (InputStream in : new InputStream[] { process.getInputStream(), process.getErrorStream() }) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          Log.warn("Problem closing process stream: " + e.getMessage());
+        }
+      }
+    }
+
+    private XList<String> snapshot(ArrayDeque<String> lines) {
+      synchronized (lines) {
+        return XList.create(lines);
+      }
+    }
+  }
+
+  private Void pumpLines(InputStream in, Consumer<String> callback, ArrayDeque<String> lines) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      for (String line = readLine(reader); line != null; line = readLine(reader)) {
+        callback.accept(line);
+        if (keepLines > 0) {
+          synchronized (lines) {
+            if (lines.size() == keepLines) {
+              lines.removeFirst();
+            }
+            lines.addLast(line);
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private Void pumpBytes(InputStream in, OutputStream out) throws IOException {
+    try (InputStream is = in) {
+      byte[] buf = new byte[8192];
+      for (int n = read(is, buf); n != -1; n = read(is, buf)) {
+        out.write(buf, 0, n);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The pipe gets closed under us when the process exits while a child process still has it open, or when await()
+   * gives up on it. Either way, that's the end of the output.
+   */
+  private static String readLine(BufferedReader reader) {
+    try {
+      return reader.readLine();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static int read(InputStream in, byte[] buf) {
+    try {
+      return in.read(buf);
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  public static class Result {
+    public final XList<String> command;
+    public final int exitCode;
+    public final boolean timedOut, cancelled;
+
+    /**
+     * The last lines of each stream (see keepLines()).
+     */
+    public final XList<String> stdout, stderr;
+    public final Duration duration;
+
+    private Result(XList<String> command, int exitCode, boolean timedOut, boolean cancelled, XList<String> stdout,
+        XList<String> stderr, Duration duration) {
+      this.command = command;
+      this.exitCode = exitCode;
+      this.timedOut = timedOut;
+      this.cancelled = cancelled;
+      this.stdout = stdout;
+      this.stderr = stderr;
+      this.duration = duration;
+    }
+
+    public boolean succeeded() {
+      return exitCode == 0 && !timedOut && !cancelled;
+    }
+
+    public String getStdout() {
+      return stdout.join("\n");
+    }
+
+    public String getStderr() {
+      return stderr.join("\n");
+    }
+
+    /**
+     * Throws if the process didn't succeed, with the end of its stderr in the message.
+     */
+    public Result check() {
+      checkState(!timedOut, "Timed out after " + duration + " on command: " + command);
+      checkState(!cancelled, "Cancelled command: " + command);
+      checkState(exitCode == 0, "Return code: " + exitCode + " on command: " + command
+          + (stderr.isEmpty() ? "" : "\n" + String.join("\n", stderr.subList(Math.max(0, stderr.size() - 20),
+              stderr.size()))));
+      return this;
+    }
+  }
+
+}
@@ -1,21 +1,81 @@
 package ox.util;
 
+import static ox.util.Utils.propagate;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import com.google.common.collect.Maps;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 
+import ox.File;
 import ox.x.XList;
 
 public class Regex {
 
-  private static final Map<String, Pattern> patternCache = Maps.newConcurrentMap();
+  public static final int MAX_CACHED_PATTERNS = 2048;
+
+  public static final int STREAM_WINDOW_SIZE = 1024 * 1024;
+
+  private static final int MAX_POOLED_MATCHERS = 64;
+
+  /**
+   * Bounded so that callers building patterns from user input can't grow it forever. Least recently used patterns are
+   * evicted first.
+   */
+  private static final Cache<PatternKey, Pattern> patternCache = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHED_PATTERNS)
+      .recordStats()
+      .build();
+
+  private static final ThreadLocal<Map<Pattern, Matcher>> matcherPool = ThreadLocal.withInitial(IdentityHashMap::new);
 
   public static Pattern pattern(String s) {
-    return patternCache.computeIfAbsent(s, Pattern::compile);
+    return pattern(s, 0);
+  }
+
+  /**
+   * @param flags e.g. Pattern.CASE_INSENSITIVE. Patterns with different flags are cached separately.
+   */
+  public static Pattern pattern(String s, int flags) {
+    PatternKey key = new PatternKey(s, flags);
+    Pattern ret = patternCache.getIfPresent(key);
+    if (ret == null) {
+      // compiled outside the cache's loader so that a PatternSyntaxException reaches the caller unwrapped
+      ret = Pattern.compile(s, flags);
+      patternCache.put(key, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Hit, miss and eviction counts for the pattern cache.
+   */
+  public static CacheStats cacheStats() {
+    return patternCache.stats();
+  }
+
+  public static long cacheSize() {
+    return patternCache.size();
   }
 
   /**
@@ -47,12 +107,16 @@ public class Regex {
     return matches(pattern(pattern), document);
   }
 
+  public static XList<String> matches(Pattern pattern, String document) {
+    return matches(pattern, (CharSequence) document);
+  }
+
   /**
    * Gets all matches for the given pattern.
    */
-  public static XList<String> matches(Pattern pattern, String document) {
+  public static XList<String> matches(Pattern pattern, CharSequence document) {
     XList<String> ret = XList.create();
-    run(pattern, document, m -> {
+    forEachMatch(pattern, document, m -> {
       if (m.groupCount() == 0) {
         ret.add(m.group());
       } else {
@@ -79,12 +143,167 @@ public class Regex {
   }
 
   public static String replaceAll(Pattern pattern, String document, Function<Matcher, String> callback) {
-    StringBuffer ret = new StringBuffer();
-    run(pattern, document, m -> {
-      String s = callback.apply(m);
-      m.appendReplacement(ret, "");
-      ret.append(s);
-    }).appendTail(ret);
-    return ret.toString();
+    return replaceAll(pattern, document, callback, new StringBuilder(document.length())).toString();
+  }
+
+  /**
+   * Like run(), but reuses a Matcher owned by the current thread instead of allocating one. The Matcher is only valid
+   * until the callback returns.
+   */
+  public static void forEachMatch(Pattern pattern, CharSequence document, Consumer<Matcher> callback) {
+    Matcher m = borrowMatcher(pattern, document);
+    try {
+      while (m.find()) {
+        callback.accept(m);
+      }
+    } finally {
+      returnMatcher(pattern, m);
+    }
+  }
+
+  /**
+   * Appends the document to the output with each match replaced by the result of the callback.
+   */
+  public static <A extends Appendable> A replaceAll(Pattern pattern, CharSequence document,
+      Function<Matcher, String> callback, A output) {
+    Matcher m = borrowMatcher(pattern, document);
+    try {
+      int last = 0;
+      while (m.find()) {
+        String replacement = callback.apply(m);
+        output.append(document, last, m.start()).append(replacement);
+        last = m.end();
+      }
+      output.append(document, last, document.length());
+    } catch (IOException e) {
+      throw propagate(e);
+    } finally {
+      returnMatcher(pattern, m);
+    }
+    return output;
+  }
+
+  /**
+   * Rewrites the input a window of whole lines at a time, so inputs of any size can be processed in bounded memory.
+   * Matches can't span lines, and the Matcher's offsets are relative to the current window.
+   *
+   * Each window is matched as an input of its own, so even without MULTILINE, ^ and $ (and \A, \z and \Z) can also
+   * match at the start of its first line and the end of its last line.
+   */
+  public static void replaceAll(Pattern pattern, Reader input, Writer output, Function<Matcher, String> callback) {
+    forEachWindow(input, window -> replaceAll(pattern, window, callback, output));
+  }
+
+  /**
+   * Rewrites a UTF-8 file of any size into the output file, which may be the input file itself. The result is written
+   * to a temporary file and renamed into place. See replaceAll(Pattern, Reader, Writer, Function).
+   */
+  public static void replaceAll(Pattern pattern, File input, File output, Function<Matcher, String> callback) {
+    File temp = output.sibling(output.getName() + ".tmp");
+    try (Reader reader = new InputStreamReader(new FileInputStream(input.file), StandardCharsets.UTF_8);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(temp.outputStream(), StandardCharsets.UTF_8))) {
+      replaceAll(pattern, reader, writer, callback);
+    } catch (Exception e) {
+      temp.delete();
+      throw propagate(e);
+    }
+    try {
+      Files.move(temp.file.toPath(), output.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      temp.rename(output);
+    } catch (IOException e) {
+      throw propagate(e);
+    }
   }
+
+  /**
+   * Finds the matches in an input of any size, a window of whole lines at a time. Matches can't span lines.
+   */
+  public static void forEachMatch(Pattern pattern, Reader input, Consumer<Matcher> callback) {
+    forEachWindow(input, window -> forEachMatch(pattern, window, callback));
+  }
+
+  private static void forEachWindow(Reader reader, Consumer<CharBuffer> callback) {
+    char[] buffer = new char[STREAM_WINDOW_SIZE];
+    int length = 0;
+    try {
+      while (true) {
+        int n = reader.read(buffer, length, buffer.length - length);
+        if (n == -1) {
+          if (length > 0) {
+            callback.accept(CharBuffer.wrap(buffer, 0, length));
+          }
+          return;
+        }
+        length += n;
+        if (length < buffer.length) {
+          continue;
+        }
+        int boundary = lastIndexOf(buffer, '\n', length) + 1;
+        if (boundary == 0) {
+          // a single line longer than the window
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+          continue;
+        }
+        callback.accept(CharBuffer.wrap(buffer, 0, boundary));
+        System.arraycopy(buffer, boundary, buffer, 0, length - boundary);
+        length -= boundary;
+      }
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+  }
+
+  private static int lastIndexOf(char[] buffer, char c, int length) {
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Takes the thread's Matcher for this pattern out of the pool, so that a callback that uses the same pattern
+   * recursively gets its own.
+   */
+  private static Matcher borrowMatcher(Pattern pattern, CharSequence document) {
+    Matcher ret = matcherPool.get().remove(pattern);
+    return ret == null ? pattern.matcher(document) : ret.reset(document);
+  }
+
+  private static void returnMatcher(Pattern pattern, Matcher m) {
+    Map<Pattern, Matcher> pool = matcherPool.get();
+    if (pool.size() >= MAX_POOLED_MATCHERS) {
+      pool.clear();
+    }
+    // don't hold on to the document
+    pool.put(pattern, m.reset(""));
+  }
+
+  private static class PatternKey {
+    private final String regex;
+    private final int flags;
+
+    private PatternKey(String regex, int flags) {
+      this.regex = regex;
+      this.flags = flags;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof PatternKey)) {
+        return false;
+      }
+      PatternKey other = (PatternKey) o;
+      return flags == other.flags && regex.equals(other.regex);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(regex, flags);
+    }
+  }
+
 }
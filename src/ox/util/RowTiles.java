@@ -0,0 +1,83 @@
+package ox.util;
+
+import static ox.util.Utils.propagate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ox.NamedThreadFactory;
+
+/**
+ * Splits the rows of an image into tiles and processes them on a shared pool of daemon threads.
+ *
+ * The calling thread works on tiles too and only waits for tiles that another thread has already started, so this is
+ * safe to call from inside another parallel task (e.g. a batch of thumbnails) without deadlocking.
+ */
+class RowTiles {
+
+  private static final int NUM_CORES = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Below this many pixels per tile, the handoff to another thread costs more than it saves.
+   */
+  private static final int MIN_TILE_PIXELS = 64 * 1024;
+
+  private static final ExecutorService executor = Executors.newFixedThreadPool(NUM_CORES,
+      new NamedThreadFactory(RowTiles.class).daemon());
+
+  /**
+   * Calls back with [fromRow, toRow) for each tile, covering rows 0 to numRows.
+   */
+  static void run(int numRows, int pixelsPerRow, TileConsumer callback) {
+    long pixels = (long) numRows * pixelsPerRow;
+    int numTiles = (int) Math.min(Math.min(numRows, NUM_CORES * 4), Math.max(1, pixels / MIN_TILE_PIXELS));
+    if (numTiles <= 1) {
+      if (numRows > 0) {
+        callback.accept(0, numRows);
+      }
+      return;
+    }
+
+    AtomicInteger nextTile = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(numTiles);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    Runnable worker = () -> {
+      for (int tile = nextTile.getAndIncrement(); tile < numTiles; tile = nextTile.getAndIncrement()) {
+        try {
+          if (error.get() == null) {
+            callback.accept(rowAt(tile, numTiles, numRows), rowAt(tile + 1, numTiles, numRows));
+          }
+        } catch (Throwable t) {
+          error.compareAndSet(null, t);
+        } finally {
+          done.countDown();
+        }
+      }
+    };
+    for (int i = 1; i < Math.min(numTiles, NUM_CORES); i++) {
+      executor.execute(worker);
+    }
+    worker.run();
+
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      throw propagate(e);
+    }
+    if (error.get() != null) {
+      throw propagate(error.get());
+    }
+  }
+
+  private static int rowAt(int tile, int numTiles, int numRows) {
+    return (int) ((long) tile * numRows / numTiles);
+  }
+
+  static interface TileConsumer {
+    void accept(int fromRow, int toRow);
+  }
+
+}
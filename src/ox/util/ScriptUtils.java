@@ -4,9 +4,10 @@ import static com.google.common.base.Preconditions.checkState;
 import static ox.util.Utils.propagate;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.lang.ProcessBuilder.Redirect;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import ox.File;
 import ox.IO;
@@ -105,26 +106,33 @@ public class ScriptUtils {
   }
 
   /**
-   * Redirects the outputstream of the process to the given one.
+   * Redirects the outputstream of the process to the given one, then flushes and closes it. stderr is always drained
+   * (and printed if debug is on), so the process can't block on it.
    */
   private static void run(XList<String> m, OutputStream out, File workingDir) {
-    int exitStatus;
-    try {
-      ProcessBuilder pb = new ProcessBuilder().command(m);
-      if (workingDir != null) {
-        pb.directory(workingDir.file);
-      }
-
-      if (debug) {
-        pb.redirectError(Redirect.INHERIT);
-      }
-      Process process = pb.start();
-      IO.from(process.getInputStream()).to(out);
-      exitStatus = process.waitFor();
-    } catch (Exception e) {
+    try (OutputStream os = out) {
+      new ProcessRunner(m)
+          .workingDir(workingDir)
+          .stdoutTo(os)
+          .onStderr(line -> {
+            if (debug) {
+              System.err.println(line);
+            }
+          })
+          .run();
+      os.flush();
+    } catch (IOException e) {
       throw propagate(e);
     }
-    checkState(exitStatus == 0, "Status: " + exitStatus);
+  }
+
+  /**
+   * Runs the shell commands with at most maxConcurrent at a time, returning their results in the same order. Throws if
+   * any of them fail.
+   */
+  public static XList<ProcessRunner.Result> runAll(List<String> commands, int maxConcurrent) {
+    commands.forEach(Log::debug);
+    return ProcessRunner.runAll(XList.create(commands).map(ProcessRunner::shell), maxConcurrent);
   }
 
   public static String runAndgetOutput(String command) {
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static ox.util.Utils.isNullOrEmpty;
 
 import java.time.Clock;
+import java.time.DateTimeException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -30,11 +31,28 @@ public class Time {
   private static final DateTimeFormatter longFormat = DateTimeFormatter.ofPattern("MMM d, yyyy");
   public static final DateTimeFormatter dateTimeFormat = DateTimeFormatter.ofPattern("M/d/yyyy h:mm a");
 
-  private static final Map<String, DateTimeFormatter> formatCache = Maps.newHashMap();
+  private static final String ISO_DATE_PATTERN = "yyyy-MM-dd", SLASH_PATTERN = "MM/dd/yyyy",
+      DATE_TIME_PATTERN = "M/d/yyyy h:mm a";
+
+  // in the default locale, as DateTimeFormatter would print them
+  private static final String AM = DateTimeFormatter.ofPattern("a").format(LocalTime.MIDNIGHT),
+      PM = DateTimeFormatter.ofPattern("a").format(LocalTime.NOON);
+
+  private static final Map<String, DateTimeFormatter> formatCache = Maps.newConcurrentMap();
 
   private static final InheritableThreadLocal<Clock> threadClocks = new InheritableThreadLocal<>();
   private static final Clock SYSTEM_CLOCK = Clock.system(DEFAULT_TIME_ZONE);
-  private static Clock globalClock = SYSTEM_CLOCK;
+
+  /**
+   * The clock used when nothing has been overridden: SYSTEM_CLOCK, or a CoarseClock after useCoarseClock().
+   */
+  private static volatile Clock defaultClock = SYSTEM_CLOCK;
+  private static volatile Clock globalClock = SYSTEM_CLOCK;
+
+  /**
+   * Lets getClock() skip the thread local lookup until someone actually calls setClock().
+   */
+  private static volatile boolean threadClocksUsed = false;
 
   public static Instant timestamp(LocalDate date) {
     return timestamp(date.atStartOfDay(DEFAULT_TIME_ZONE));
@@ -66,7 +84,11 @@ public class Time {
   }
 
   public static LocalDate now() {
-    return LocalDate.now(getClock());
+    Clock clock = getClock();
+    if (clock instanceof CoarseClock) {
+      return ((CoarseClock) clock).today();
+    }
+    return LocalDate.now(clock);
   }
 
   public static LocalDate now(ZoneId timezone) {
@@ -101,6 +123,9 @@ public class Time {
     if (date instanceof Instant) {
       date = toDate((Instant) date);
     }
+    if (date instanceof LocalDate) {
+      return appendSlashDate(new StringBuilder(10), (LocalDate) date).toString();
+    }
     return date == null ? "" : slashFormat.format(date);
   }
 
@@ -122,18 +147,23 @@ public class Time {
     if (date instanceof Instant) {
       date = toDate((Instant) date);
     }
-    DateTimeFormatter dtf;
-    synchronized (formatCache) {
-      dtf = formatCache.computeIfAbsent(format, DateTimeFormatter::ofPattern);
+    if (date instanceof LocalDate) {
+      if (format.equals(ISO_DATE_PATTERN)) {
+        return appendISODate(new StringBuilder(10), (LocalDate) date).toString();
+      } else if (format.equals(SLASH_PATTERN)) {
+        return appendSlashDate(new StringBuilder(10), (LocalDate) date).toString();
+      }
+    } else if (date instanceof LocalDateTime && format.equals(DATE_TIME_PATTERN)) {
+      return appendDateTime(new StringBuilder(20), (LocalDateTime) date).toString();
     }
-    return dtf.format(date);
+    return getFormatter(format).format(date);
   }
 
   public static LocalDate parseDate(String s) {
     if (isNullOrEmpty(s)) {
       return null;
     }
-    return LocalDate.parse(s);
+    return parseISODate(s);
   }
 
   public static LocalDate parseDate(String s, DateTimeFormatter format) {
@@ -160,8 +190,29 @@ public class Time {
     if (isNullOrEmpty(s)) {
       return null;
     }
-    DateTimeFormatter dtf = formatCache.computeIfAbsent(format, Time::createFormatter);
-    return LocalDate.parse(s, dtf);
+    LocalDate ret = null;
+    if (format.equals(ISO_DATE_PATTERN)) {
+      ret = parseISODateFast(s);
+    } else if (format.equals(SLASH_PATTERN)) {
+      ret = parseSlashDate(s);
+    }
+    if (ret != null) {
+      return ret;
+    }
+    return LocalDate.parse(s, getFormatter(format));
+  }
+
+  public static LocalDateTime parseDateTime(String s, String format) {
+    if (isNullOrEmpty(s)) {
+      return null;
+    }
+    if (format.equals(DATE_TIME_PATTERN)) {
+      LocalDateTime ret = parseDateTimeFast(s);
+      if (ret != null) {
+        return ret;
+      }
+    }
+    return LocalDateTime.parse(s, getFormatter(format));
   }
 
   public static LocalTime parseTime(String s) {
@@ -172,15 +223,232 @@ public class Time {
     if (isNullOrEmpty(s)) {
       return null;
     }
-    DateTimeFormatter dtf = formatCache.computeIfAbsent(format, Time::createFormatter);
-    return LocalTime.parse(s, dtf);
+    return LocalTime.parse(s, getFormatter(format));
+  }
+
+  /**
+   * Parses yyyy-MM-dd without going through DateTimeFormatter. Anything else falls back to LocalDate.parse().
+   */
+  public static LocalDate parseISODate(CharSequence s) {
+    LocalDate ret = parseISODateFast(s);
+    return ret != null ? ret : LocalDate.parse(s);
+  }
+
+  /**
+   * Returns null unless s is a valid yyyy-MM-dd date, so that the caller can fall back to its usual parser.
+   */
+  private static LocalDate parseISODateFast(CharSequence s) {
+    if (s.length() == 10 && s.charAt(4) == '-' && s.charAt(7) == '-') {
+      int year = digits(s, 0, 4), month = digits(s, 5, 7), day = digits(s, 8, 10);
+      if (year >= 0 && month >= 0 && day >= 0) {
+        try {
+          return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+          // an invalid day of month, so let the caller's fallback parser handle it
+          return null;
+        }
+      }
+    }
+    return null;
   }
 
-  private static DateTimeFormatter createFormatter(String pattern) {
-      return new DateTimeFormatterBuilder()
-          .parseCaseInsensitive()
-          .appendPattern(pattern)
-          .toFormatter();
+  /**
+   * Parses an Instant in the form Instant.toString() produces, e.g. 2020-01-31T08:15:30.123Z. Anything else falls back
+   * to Instant.parse().
+   */
+  public static Instant parseInstant(CharSequence s) {
+    int length = s.length();
+    if (length >= 20 && s.charAt(length - 1) == 'Z' && s.charAt(10) == 'T' && s.charAt(13) == ':'
+        && s.charAt(16) == ':') {
+      int hour = digits(s, 11, 13), minute = digits(s, 14, 16), second = digits(s, 17, 19);
+      int nanos = 0;
+      boolean valid = hour >= 0 && minute >= 0 && second >= 0;
+      if (length > 20) {
+        int fractionDigits = length - 21;
+        valid &= s.charAt(19) == '.' && fractionDigits >= 1 && fractionDigits <= 9;
+        if (valid) {
+          nanos = digits(s, 20, length - 1);
+          for (int i = fractionDigits; i < 9 && nanos >= 0; i++) {
+            nanos *= 10;
+          }
+          valid = nanos >= 0;
+        }
+      }
+      if (valid && s.charAt(4) == '-' && s.charAt(7) == '-') {
+        int year = digits(s, 0, 4), month = digits(s, 5, 7), day = digits(s, 8, 10);
+        if (year >= 0 && month >= 0 && day >= 0) {
+          try {
+            long days = LocalDate.of(year, month, day).toEpochDay();
+            LocalTime time = LocalTime.of(hour, minute, second);
+            return Instant.ofEpochSecond(days * 86400 + time.toSecondOfDay(), nanos);
+          } catch (DateTimeException e) {
+            // let Instant.parse() throw its usual exception
+          }
+        }
+      }
+    }
+    return Instant.parse(s);
+  }
+
+  /**
+   * Appends the date as yyyy-MM-dd.
+   */
+  public static StringBuilder appendISODate(StringBuilder sb, LocalDate date) {
+    if (date.getYear() < 0 || date.getYear() > 9999) {
+      return sb.append(date);
+    }
+    appendDigits(sb, date.getYear(), 4).append('-');
+    appendDigits(sb, date.getMonthValue(), 2).append('-');
+    return appendDigits(sb, date.getDayOfMonth(), 2);
+  }
+
+  /**
+   * Appends the date as MM/dd/yyyy.
+   */
+  public static StringBuilder appendSlashDate(StringBuilder sb, LocalDate date) {
+    if (date.getYear() < 0 || date.getYear() > 9999) {
+      return sb.append(slashFormat.format(date));
+    }
+    appendDigits(sb, date.getMonthValue(), 2).append('/');
+    appendDigits(sb, date.getDayOfMonth(), 2).append('/');
+    return appendDigits(sb, date.getYear(), 4);
+  }
+
+  /**
+   * Appends the date and time as M/d/yyyy h:mm a.
+   */
+  public static StringBuilder appendDateTime(StringBuilder sb, LocalDateTime dateTime) {
+    if (dateTime.getYear() < 0 || dateTime.getYear() > 9999) {
+      return sb.append(dateTimeFormat.format(dateTime));
+    }
+    sb.append(dateTime.getMonthValue()).append('/').append(dateTime.getDayOfMonth()).append('/');
+    appendDigits(sb, dateTime.getYear(), 4).append(' ');
+    int hour = dateTime.getHour() % 12;
+    sb.append(hour == 0 ? 12 : hour).append(':');
+    appendDigits(sb, dateTime.getMinute(), 2).append(' ');
+    return sb.append(dateTime.getHour() < 12 ? AM : PM);
+  }
+
+  /**
+   * Appends the instant the same way as Instant.toString(), e.g. 2020-01-31T08:15:30.123Z
+   */
+  public static StringBuilder appendInstant(StringBuilder sb, Instant instant) {
+    long seconds = instant.getEpochSecond();
+    long days = Math.floorDiv(seconds, 86400);
+    int secondOfDay = (int) Math.floorMod(seconds, 86400L);
+    // outside of years 0000 to 9999, Instant.toString() adds a sign or more digits
+    if (days < -719528 || days > 2932896) {
+      return sb.append(instant);
+    }
+    LocalDate date = LocalDate.ofEpochDay(days);
+    appendISODate(sb, date).append('T');
+    appendDigits(sb, secondOfDay / 3600, 2).append(':');
+    appendDigits(sb, secondOfDay / 60 % 60, 2).append(':');
+    appendDigits(sb, secondOfDay % 60, 2);
+    int nanos = instant.getNano();
+    if (nanos > 0) {
+      sb.append('.');
+      if (nanos % 1_000_000 == 0) {
+        appendDigits(sb, nanos / 1_000_000, 3);
+      } else if (nanos % 1000 == 0) {
+        appendDigits(sb, nanos / 1000, 6);
+      } else {
+        appendDigits(sb, nanos, 9);
+      }
+    }
+    return sb.append('Z');
+  }
+
+  /**
+   * The fast path for MM/dd/yyyy, or null if the text isn't in exactly that shape.
+   */
+  private static LocalDate parseSlashDate(CharSequence s) {
+    if (s.length() != 10 || s.charAt(2) != '/' || s.charAt(5) != '/') {
+      return null;
+    }
+    int month = digits(s, 0, 2), day = digits(s, 3, 5), year = digits(s, 6, 10);
+    if (year < 0 || month < 0 || day < 0) {
+      return null;
+    }
+    try {
+      return LocalDate.of(year, month, day);
+    } catch (DateTimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * The fast path for M/d/yyyy h:mm a, or null if the text isn't in that shape.
+   */
+  private static LocalDateTime parseDateTimeFast(String s) {
+    int length = s.length();
+    int i = s.indexOf('/');
+    int j = i < 0 ? -1 : s.indexOf('/', i + 1);
+    int space = j < 0 ? -1 : s.indexOf(' ', j + 1);
+    int colon = space < 0 ? -1 : s.indexOf(':', space + 1);
+    if (colon < 0 || i > 2 || j - i - 1 > 2 || space - j - 1 != 4 || colon - space - 1 > 2 || colon + 6 != length
+        || s.charAt(colon + 3) != ' ') {
+      return null;
+    }
+    int month = digits(s, 0, i), day = digits(s, i + 1, j), year = digits(s, j + 1, space);
+    int hour = digits(s, space + 1, colon), minute = digits(s, colon + 1, colon + 3);
+    if (month < 0 || day < 0 || year < 0 || hour < 1 || hour > 12 || minute < 0) {
+      return null;
+    }
+    char a = Character.toUpperCase(s.charAt(length - 2)), m = Character.toUpperCase(s.charAt(length - 1));
+    if ((a != 'A' && a != 'P') || m != 'M' || !AM.equals("AM")) {
+      return null;
+    }
+    hour = hour % 12 + (a == 'P' ? 12 : 0);
+    try {
+      return LocalDateTime.of(year, month, day, hour, minute);
+    } catch (DateTimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Parses s[start, end) as a non-negative int, or returns -1 if it is empty or contains anything but digits.
+   */
+  private static int digits(CharSequence s, int start, int end) {
+    if (start >= end || end - start > 9) {
+      return -1;
+    }
+    int ret = 0;
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      ret = ret * 10 + (c - '0');
+    }
+    return ret;
+  }
+
+  private static StringBuilder appendDigits(StringBuilder sb, int n, int width) {
+    for (int divisor = pow10(width - 1); divisor > 1 && n < divisor; divisor /= 10) {
+      sb.append('0');
+    }
+    return sb.append(n);
+  }
+
+  private static int pow10(int n) {
+    int ret = 1;
+    for (int i = 0; i < n; i++) {
+      ret *= 10;
+    }
+    return ret;
+  }
+
+  /**
+   * Formatters are cached by pattern and shared between threads (DateTimeFormatter is immutable). They parse case
+   * insensitively, e.g. "pm" or "PM".
+   */
+  public static DateTimeFormatter getFormatter(String pattern) {
+    return formatCache.computeIfAbsent(pattern, p -> new DateTimeFormatterBuilder()
+        .parseCaseInsensitive()
+        .appendPattern(p)
+        .toFormatter());
   }
 
   public static void setDefaultTimeZone(ZoneId zone) {
@@ -193,18 +461,58 @@ public class Time {
   }
 
   public static Clock getClock() {
-    Clock ret = threadClocks.get();
-    if (ret == null) {
-      ret = globalClock;
+    if (threadClocksUsed) {
+      Clock ret = threadClocks.get();
+      if (ret != null) {
+        return ret;
+      }
     }
+    return globalClock;
+  }
+
+  /**
+   * Makes now(), nowInstant() etc. read a clock that a background thread updates every tickMillis, instead of asking
+   * the system each time. Values can be up to tickMillis stale. Clocks set with setClock() or setGlobalClock() still
+   * take precedence.
+   */
+  public static synchronized CoarseClock useCoarseClock(long tickMillis) {
+    CoarseClock ret = CoarseClock.start(tickMillis, DEFAULT_TIME_ZONE);
+    setDefaultClock(ret);
     return ret;
   }
 
+  /**
+   * Goes back to reading the system clock on every call.
+   */
+  public static synchronized void useExactClock() {
+    setDefaultClock(SYSTEM_CLOCK);
+  }
+
+  /**
+   * The clock installed by useCoarseClock(), or null.
+   */
+  public static CoarseClock getCoarseClock() {
+    Clock ret = defaultClock;
+    return ret instanceof CoarseClock ? (CoarseClock) ret : null;
+  }
+
+  private static void setDefaultClock(Clock clock) {
+    Clock old = defaultClock;
+    defaultClock = clock;
+    if (globalClock == old) {
+      globalClock = clock;
+    }
+    if (old instanceof CoarseClock) {
+      ((CoarseClock) old).stop();
+    }
+  }
+
   /**
    * Used for testing. All calls to now() methods in this thread and child threads will use the passed in clock instead
    * of the system clock.
    */
   public static void setClock(Clock clock) {
+    threadClocksUsed = true;
     threadClocks.set(clock);
   }
 
@@ -222,7 +530,7 @@ public class Time {
   }
 
   public static void resetGlobalClock() {
-    globalClock = SYSTEM_CLOCK;
+    globalClock = defaultClock;
   }
 
 }
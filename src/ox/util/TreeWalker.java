@@ -0,0 +1,273 @@
+package ox.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static ox.util.Utils.propagate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import ox.File;
+import ox.Log;
+import ox.x.XList;
+
+/**
+ * Walks a directory tree on a fork-join pool, one task per directory. Attributes come from a single stat per entry
+ * (symbolic links are not followed), so callers never need to call isDirectory() or length().
+ *
+ * example: File.ofPath("artifacts").walker().prune(f -> f.getName().equals(".git")).totalSize()
+ */
+public class TreeWalker {
+
+  private final Path root;
+  private int parallelism = Math.max(4, Runtime.getRuntime().availableProcessors());
+  private Predicate<File> prune = file -> false;
+
+  public TreeWalker(File root) {
+    this.root = root.file.toPath();
+  }
+
+  public TreeWalker parallelism(int parallelism) {
+    checkArgument(parallelism > 0, "parallelism=" + parallelism);
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Entries matching the predicate are skipped. For directories, nothing beneath them is visited either.
+   */
+  public TreeWalker prune(Predicate<File> prune) {
+    this.prune = checkNotNull(prune);
+    return this;
+  }
+
+  /**
+   * Streams every file and directory (including the root) to the callback as it is found. With a parallelism above 1,
+   * the callback is called concurrently and in no particular order.
+   */
+  public void forEach(BiConsumer<File, BasicFileAttributes> callback) {
+    walk(new Visitor() {
+      @Override
+      public void preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+        callback.accept(File.of(dir.toFile()), attributes);
+      }
+
+      @Override
+      public void visitFile(Path file, BasicFileAttributes attributes) {
+        callback.accept(File.of(file.toFile()), attributes);
+      }
+    });
+  }
+
+  public XList<File> filter(Predicate<File> filter) {
+    XList<File> ret = XList.create();
+    forEach((file, attributes) -> {
+      if (filter.test(file)) {
+        synchronized (ret) {
+          ret.add(file);
+        }
+      }
+    });
+    return ret;
+  }
+
+  /**
+   * The total size in bytes of all regular files in the tree.
+   */
+  public long totalSize() {
+    LongAdder ret = new LongAdder();
+    walk(new Visitor() {
+      @Override
+      public void visitFile(Path file, BasicFileAttributes attributes) {
+        if (attributes.isRegularFile()) {
+          ret.add(attributes.size());
+        }
+      }
+    });
+    return ret.sum();
+  }
+
+  /**
+   * Deletes the entire tree, including the root. Pruned entries (and therefore their parent directories) are left in
+   * place.
+   */
+  public void delete() {
+    walk(new Visitor() {
+      @Override
+      public void visitFile(Path file, BasicFileAttributes attributes) {
+        delete(file);
+      }
+
+      @Override
+      public void postVisitDirectory(Path dir) {
+        delete(dir);
+      }
+
+      private void delete(Path path) {
+        try {
+          Files.deleteIfExists(path);
+        } catch (IOException e) {
+          Log.warn("Could not delete " + path + ": " + e.getMessage());
+        }
+      }
+    });
+  }
+
+  /**
+   * Copies the contents of the root directory into the target directory, creating directories as needed.
+   */
+  public void copyContentsInto(File targetDir) {
+    Path target = targetDir.file.toPath();
+    walk(new Visitor() {
+      @Override
+      public void preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+        try {
+          Files.createDirectories(target.resolve(root.relativize(dir)));
+        } catch (IOException e) {
+          throw propagate(e);
+        }
+      }
+
+      @Override
+      public void visitFile(Path file, BasicFileAttributes attributes) {
+        try {
+          Files.copy(file, target.resolve(root.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+          throw propagate(e);
+        }
+      }
+    });
+  }
+
+  private void walk(Visitor visitor) {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+
+    if (!attributes.isDirectory()) {
+      visitor.visitFile(root, attributes);
+    } else if (parallelism == 1) {
+      walkSequentially(visitor);
+    } else {
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        pool.invoke(new DirectoryTask(root, attributes, visitor));
+      } finally {
+        pool.shutdown();
+      }
+    }
+  }
+
+  private void walkSequentially(Visitor visitor) {
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+          if (!dir.equals(root) && shouldSkip(dir)) {
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          visitor.preVisitDirectory(dir, attributes);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+          if (!shouldSkip(file)) {
+            visitor.visitFile(file, attributes);
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+          if (e != null) {
+            throw e;
+          }
+          visitor.postVisitDirectory(dir);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      throw propagate(e);
+    }
+  }
+
+  private boolean shouldSkip(Path path) {
+    if (File.ignoreDSStore && path.getFileName().toString().equals(".DS_Store")) {
+      return true;
+    }
+    return prune.test(File.of(path.toFile()));
+  }
+
+  private class DirectoryTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Path dir;
+    private final BasicFileAttributes attributes;
+    private final Visitor visitor;
+
+    private DirectoryTask(Path dir, BasicFileAttributes attributes, Visitor visitor) {
+      this.dir = dir;
+      this.attributes = attributes;
+      this.visitor = visitor;
+    }
+
+    @Override
+    protected void compute() {
+      visitor.preVisitDirectory(dir, attributes);
+
+      XList<DirectoryTask> subtasks = XList.create();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+        for (Path child : stream) {
+          if (shouldSkip(child)) {
+            continue;
+          }
+          BasicFileAttributes childAttributes = Files.readAttributes(child, BasicFileAttributes.class,
+              LinkOption.NOFOLLOW_LINKS);
+          if (childAttributes.isDirectory()) {
+            DirectoryTask task = new DirectoryTask(child, childAttributes, visitor);
+            task.fork();
+            subtasks.add(task);
+          } else {
+            visitor.visitFile(child, childAttributes);
+          }
+        }
+      } catch (IOException e) {
+        throw propagate(e);
+      }
+
+      for (DirectoryTask task : subtasks) {
+        task.join();
+      }
+
+      visitor.postVisitDirectory(dir);
+    }
+  }
+
+  private interface Visitor {
+    default void preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+    }
+
+    void visitFile(Path file, BasicFileAttributes attributes);
+
+    default void postVisitDirectory(Path dir) {
+    }
+  }
+
+}
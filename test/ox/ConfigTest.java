@@ -0,0 +1,37 @@
+package ox;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+public class ConfigTest {
+
+  @Test
+  public void reloadKeepsUnsavedPuts() throws IOException {
+    File file = File.of(Files.createTempDirectory("config").toFile()).child("config.json");
+    Config config = Config.load(file);
+    try (Closeable live = config.live()) {
+      config.put("a", "1");
+      config.flush();
+      config.put("b", "2");
+
+      // the watcher event for the first save arrives after the second put()
+      config.reload();
+      checkState("2".equals(config.get("b")), config.json());
+
+      config.flush();
+      config.reload();
+      checkState("1".equals(config.get("a")) && "2".equals(config.get("b")), config.json());
+
+      // an edit by another process
+      IO.from("{\"a\": \"3\"}").to(file);
+      config.reload();
+      checkState("3".equals(config.get("a")) && config.get("b") == null, config.json());
+    }
+  }
+
+}
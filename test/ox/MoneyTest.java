@@ -1,11 +1,19 @@
 package ox;
 
 import static com.google.common.base.Preconditions.checkState;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.RoundingMode;
 
 import org.junit.jupiter.api.Test;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Objects;
 
+import ox.util.Perf;
+import ox.util.Utils;
+import ox.x.XList;
+
 public class MoneyTest {
 
   @Test
@@ -16,6 +24,87 @@ public class MoneyTest {
     checkState(Objects.equal(Money.parse("-$12").toLong(), -1200L));
     checkState(Objects.equal(Money.parse("(12)").toLong(), -1200L));
     checkState(Objects.equal(Money.parse("$12.34567").toLong(), 1235L));
+    checkState(Objects.equal(Money.parse("$1,234,567.8").toLong(), 123456780L));
+    checkState(Objects.equal(Money.parse("–$1.05").toLong(), -105L));
+    checkState(Objects.equal(Money.parse("($1,000.00)").toLong(), -100000L));
+    checkState(Objects.equal(Money.parse("$.5").toLong(), 50L));
+    checkState(Objects.equal(Money.parse("12.345").toLong(), 1235L));
+    checkState(Objects.equal(Money.parse("90071992547409.93").toLong(), 9007199254740993L));
+    checkState(Objects.equal(Money.parse("1e3").toLong(), 100000L));
+    checkState(Money.parseCents("$92,233,720,368,547,758.07") == Long.MAX_VALUE);
+    assertThrows(NumberFormatException.class, () -> Money.parseCents("$99999999999999999.99"));
+    assertThrows(NumberFormatException.class, () -> Money.parseCents("922337203685477580.99"));
+    assertThrows(NumberFormatException.class, () -> Money.parseCents("92233720368547758.079"));
+    assertThrows(NumberFormatException.class, () -> Money.parseCents("922337203685477581"));
+  }
+
+  @Test
+  public void format() {
+    checkState(Money.ZERO.toString().equals("$0.00"));
+    checkState(Money.fromLong(-123456789).toString().equals("-$1,234,567.89"));
+    checkState(Money.fromLong(100000).toString().equals("$1,000.00"));
+    checkState(Money.fromLong(Long.MIN_VALUE).toString().equals("-$92,233,720,368,547,758.08"));
+    checkState(Money.fromLong(-5).appendTo(new StringBuilder("x")).toString().equals("x-$0.05"));
+    for (long cents : new long[] { 0, 7, -99, 123456, -100000000001L }) {
+      Money m = Money.fromLong(cents);
+      checkState(m.toString().equals(Utils.money(m.toDouble())), m);
+      checkState(Money.parse(m.toString()).equals(m), m);
+    }
+  }
+
+  @Test
+  public void moneyArray() {
+    MoneyArray a = MoneyArray.ofCents(1000, -250, 333);
+    checkState(a.sum().toLong() == 1083);
+    checkState(a.min().toLong() == -250 && a.max().toLong() == 1000);
+    checkState(a.add(a).subtract(Money.fromLong(1)).getCents(2) == 665);
+    MoneyArray scaled = a.multiply(Percent.parse("12.5%"), RoundingMode.HALF_UP);
+    checkState(scaled.getCents(0) == 125 && scaled.getCents(1) == -31 && scaled.getCents(2) == 42, scaled);
+    checkState(a.sumBy(XList.of("x", "y", "x")).get("x").toLong() == 1333);
+    assertThrows(ArithmeticException.class, () -> MoneyArray.ofCents(Long.MAX_VALUE, 1).sum());
+    assertThrows(ArithmeticException.class, () -> MoneyArray.ofCents(Long.MIN_VALUE, -1).sum());
+    checkState(MoneyArray.ofCents(Long.MIN_VALUE + 5, -5).sum().toLong() == Long.MIN_VALUE);
+    checkState(MoneyArray.ofCents(Long.MIN_VALUE, 1, -1).sum().toLong() == Long.MIN_VALUE);
+    checkState(MoneyArray.ofCents(Long.MAX_VALUE - 1, 2, -1).sum().toLong() == Long.MAX_VALUE);
+    assertThrows(ArithmeticException.class, () -> MoneyArray.ofCents(Long.MAX_VALUE).add(Money.fromLong(1)));
+  }
+
+  /**
+   * Compares parse and format against the Double and DecimalFormat based versions.
+   */
+  public static void main(String... args) {
+    CharMatcher moneyMatcher = CharMatcher.anyOf("$£€ ,-–()").precomputed();
+    String[] inputs = new String[1000];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = Money.fromLong(i * 104729L - 5_000_000).toString();
+    }
+    Log.debug("parse: function1 = Money.parse, function2 = Double.parseDouble");
+    Perf.test(5, 1000, () -> {
+      for (String s : inputs) {
+        Money.parseCents(s);
+      }
+    }, () -> {
+      for (String s : inputs) {
+        Math.round(Double.parseDouble(moneyMatcher.removeFrom(s)) * 100);
+      }
+    });
+
+    Money[] values = new Money[inputs.length];
+    for (int i = 0; i < inputs.length; i++) {
+      values[i] = Money.parse(inputs[i]);
+    }
+    StringBuilder sb = new StringBuilder();
+    Log.debug("format: function1 = Money.appendTo, function2 = Utils.money");
+    Perf.test(5, 1000, () -> {
+      for (Money m : values) {
+        sb.setLength(0);
+        m.appendTo(sb);
+      }
+    }, () -> {
+      for (Money m : values) {
+        Utils.money(m.toDouble());
+      }
+    });
   }
 
 }
@@ -0,0 +1,93 @@
+package ox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ox.util.Utils.sleep;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import ox.RetryPolicy.RetryBudget;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void retriesServerErrors() {
+    AtomicInteger calls = new AtomicInteger();
+    withServer(n -> n < 3 ? 503 : 200, 0, calls, url -> {
+      HttpRequest request = RetryPolicy.create().maxAttempts(3).backoff(Duration.ofMillis(1), Duration.ofMillis(5))
+          .budget(new RetryBudget(1, 10)).execute(() -> HttpRequest.get(url));
+      assertEquals(200, request.status());
+      assertEquals(3, calls.get());
+    });
+  }
+
+  @Test
+  public void budgetLimitsRetries() {
+    AtomicInteger calls = new AtomicInteger();
+    withServer(n -> 503, 0, calls, url -> {
+      HttpRequest request = RetryPolicy.create().maxAttempts(5).backoff(Duration.ofMillis(1), Duration.ofMillis(5))
+          .budget(new RetryBudget(0, 1)).execute(() -> HttpRequest.get(url));
+      assertEquals(503, request.status());
+      assertEquals(2, calls.get());
+    });
+  }
+
+  @Test
+  public void hedgedRequestWins() {
+    AtomicInteger calls = new AtomicInteger();
+    // the first call is slow, the hedged duplicate is fast
+    withServer(n -> 200, 2000, calls, url -> {
+      long start = System.nanoTime();
+      HttpRequest request = RetryPolicy.create().hedgeAfter(Duration.ofMillis(50)).budget(new RetryBudget(1, 10))
+          .execute(() -> HttpRequest.get(url));
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      assertEquals("2", request.getBody());
+      assertTrue(millis < 1000, "took " + millis + "ms");
+    });
+  }
+
+  private void withServer(IntUnaryOperator statusForCall, int firstCallDelayMillis, AtomicInteger calls,
+      Consumer<String> test) {
+    HttpServer server;
+    try {
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+    ExecutorService executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext("/", exchange -> {
+      int n = calls.incrementAndGet();
+      if (n == 1 && firstCallDelayMillis > 0) {
+        sleep(firstCallDelayMillis);
+      }
+      byte[] body = String.valueOf(n).getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(statusForCall.applyAsInt(n), body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      } catch (Exception e) {
+        // the client may have disconnected
+      }
+    });
+    server.start();
+    try {
+      test.accept("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    } finally {
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
+
+}
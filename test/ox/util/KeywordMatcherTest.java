@@ -0,0 +1,86 @@
+package ox.util;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import ox.File;
+import ox.IO;
+import ox.Log;
+import ox.x.XList;
+
+public class KeywordMatcherTest {
+
+  @Test
+  public void matchesSameAsRegex() {
+    XList<String> keywords = XList.of("he", "she", "his", "hers", "her", "e");
+    KeywordMatcher matcher = KeywordMatcher.of(keywords);
+    String text = randomText(new Random(1), 20_000, "hers");
+
+    long[] expected = new long[keywords.size()];
+    for (int i = 0; i < keywords.size(); i++) {
+      // lookahead so that overlapping matches are counted too
+      expected[i] = Regex.matches("(?=(" + Pattern.quote(keywords.get(i)) + "))", text).size();
+    }
+    long[] actual = new long[keywords.size()];
+    matcher.run(text, (id, start, end) -> {
+      checkState(text.substring(start, end).equals(keywords.get(id)));
+      actual[id]++;
+    });
+
+    for (int i = 0; i < keywords.size(); i++) {
+      checkState(expected[i] == actual[i], keywords.get(i) + ": " + expected[i] + " vs " + actual[i]);
+    }
+  }
+
+  @Test
+  public void ignoringCase() {
+    KeywordMatcher matcher = KeywordMatcher.ignoringCase(XList.of("cafe", "Creme  Brulee"));
+    XList<KeywordMatcher.Match> matches = matcher.matches("Un CAFÉ et une crème brûlée");
+
+    checkState(matches.size() == 2, matches);
+    checkState(matches.get(0).keyword == 0 && matches.get(0).start == 3 && matches.get(0).end == 7);
+    checkState(matches.get(1).keyword == 1 && matches.get(1).start == 15);
+    checkState(!KeywordMatcher.of(XList.of("cafe")).containsAny("CAFÉ"));
+  }
+
+  @Test
+  public void countsFile() {
+    File.temp(file -> {
+      IO.from("the cat\nsat on the mat\nCAT\ncatalog\n").to(file);
+      long[] counts = KeywordMatcher.of(XList.of("cat", "the")).countAll(file, 2);
+      checkState(counts[0] == 2 && counts[1] == 2, counts[0] + " " + counts[1]);
+      counts = KeywordMatcher.ignoringCase(XList.of("cat")).countAll(file, 2);
+      checkState(counts[0] == 3, counts[0]);
+    });
+  }
+
+  private static String randomText(Random random, int length, String alphabet) {
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Compares one pass of the matcher against calling Regex.matches() once per keyword.
+   */
+  public static void main(String... args) {
+    Random random = new Random(0);
+    XList<String> keywords = XList.create();
+    for (int i = 0; i < 300; i++) {
+      keywords.add(randomText(random, 5 + random.nextInt(6), "abcdefghijklmnopqrstuvwxyz"));
+    }
+    String document = randomText(random, 1_000_000, "abcdefghijklmnopqrstuvwxyz ");
+    KeywordMatcher matcher = KeywordMatcher.of(keywords);
+    XList<Pattern> patterns = keywords.map(k -> Regex.pattern(Pattern.quote(k)));
+
+    Log.debug("function1 = KeywordMatcher, function2 = Regex per keyword");
+    Perf.test(5, 3, () -> matcher.matches(document), () -> patterns.forEach(p -> Regex.matches(p, document)));
+  }
+
+}